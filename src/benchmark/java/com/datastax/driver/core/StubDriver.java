@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.datastax.driver.core.policies.RetryPolicy;
+
+/**
+ * A driver without a cluster for the benchmarks: the stub session prepares statements whose
+ * variables take the CQL type of the first values bound to them, so that binding runs the real
+ * codecs of the driver, and the stub result sets iterate over rows kept in memory. It lives in
+ * the driver package to reach the constructors of the prepared statement metadata.
+ */
+public final class StubDriver {
+
+    private static final MD5Digest ID = MD5Digest.wrap(new byte[16]);
+
+    private StubDriver() {
+    }
+
+    public static Session session() {
+        return (Session) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {Session.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("prepare")) {
+                    return new StubPreparedStatement(args[0].toString(), null);
+                }
+                if (method.getName().equals("getLoggedKeyspace")) {
+                    return "simplex";
+                }
+                return null;
+            }
+        });
+    }
+
+    public static ResultSet resultSet(int size) {
+        final List<Row> rows = new ArrayList<Row>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add((Row) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {Row.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    return null;
+                }
+            }));
+        }
+        return (ResultSet) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("iterator")) {
+                    return rows.iterator();
+                }
+                if (method.getName().equals("all")) {
+                    return rows;
+                }
+                if (method.getName().equals("getAvailableWithoutFetching")) {
+                    return rows.size();
+                }
+                if (method.getName().equals("isExhausted")) {
+                    return rows.isEmpty();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns rows of the driver with an id int, title text, album text, artist text, tags
+     * set&lt;text&gt; and home frozen&lt;address&gt; column, the address user type having a
+     * street text and a zip_code int field.
+     */
+    public static List<Row> songRows(int size) {
+        UserType address = new UserType("simplex", "address", true, Arrays.asList(new UserType.Field("street", DataType.text()),
+                new UserType.Field("zip_code", DataType.cint())), ProtocolVersion.V4, CodecRegistry.DEFAULT_INSTANCE);
+        DataType tags = DataType.set(DataType.text());
+        ColumnDefinitions columns = new ColumnDefinitions(new ColumnDefinitions.Definition[] {
+            new ColumnDefinitions.Definition("simplex", "songs", "id", DataType.cint()),
+            new ColumnDefinitions.Definition("simplex", "songs", "title", DataType.text()),
+            new ColumnDefinitions.Definition("simplex", "songs", "album", DataType.text()),
+            new ColumnDefinitions.Definition("simplex", "songs", "artist", DataType.text()),
+            new ColumnDefinitions.Definition("simplex", "songs", "tags", tags),
+            new ColumnDefinitions.Definition("simplex", "songs", "home", address)}, CodecRegistry.DEFAULT_INSTANCE);
+        CodecRegistry codecs = CodecRegistry.DEFAULT_INSTANCE;
+        List<Row> rows = new ArrayList<Row>(size);
+        for (int i = 0; i < size; i++) {
+            UDTValue home = address.newValue().setString("street", "Street " + i).setInt("zip_code", 10000 + i);
+            rows.add(ArrayBackedRow.fromData(columns, null, ProtocolVersion.V4, Arrays.asList(
+                    codecs.codecFor(DataType.cint()).serialize(i, ProtocolVersion.V4),
+                    codecs.codecFor(DataType.text()).serialize("Song " + i, ProtocolVersion.V4),
+                    codecs.codecFor(DataType.text()).serialize("Album " + i % 10, ProtocolVersion.V4),
+                    codecs.codecFor(DataType.text()).serialize("Artist " + i % 100, ProtocolVersion.V4),
+                    codecs.codecFor(tags).serialize(new HashSet<Object>(Arrays.asList("metal", "live")), ProtocolVersion.V4),
+                    TypeCodec.userType(address).serialize(home, ProtocolVersion.V4))));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a result set iterating once over the given rows, like the result sets of the driver.
+     */
+    public static ResultSet resultSet(final List<Row> rows) {
+        final Iterator<Row> iterator = rows.iterator();
+        return (ResultSet) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getColumnDefinitions")) {
+                    return rows.get(0).getColumnDefinitions();
+                }
+                if (method.getName().equals("getAvailableWithoutFetching")) {
+                    return rows.size();
+                }
+                if (method.getName().equals("isExhausted")) {
+                    return !iterator.hasNext();
+                }
+                if (method.getName().equals("one")) {
+                    return iterator.hasNext() ? iterator.next() : null;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A prepared statement whose variables are typed after the values first bound to it: the
+     * untyped statement returned by the session keeps a typed statement per classes of values.
+     */
+    static final class StubPreparedStatement implements PreparedStatement {
+
+        private final String query;
+        private final ColumnDefinitions variables;
+        private final PreparedId preparedId;
+        private final Map<List<Class<?>>, StubPreparedStatement> typed = new ConcurrentHashMap<List<Class<?>>, StubPreparedStatement>();
+
+        StubPreparedStatement(String query, ColumnDefinitions variables) {
+            this.query = query;
+            this.variables = variables;
+            this.preparedId = new PreparedId(new PreparedId.PreparedMetadata(ID, variables != null ? variables : ColumnDefinitions.EMPTY),
+                    new PreparedId.PreparedMetadata(ID, ColumnDefinitions.EMPTY), new int[0], ProtocolVersion.V4);
+        }
+
+        private StubPreparedStatement typed(Object... values) {
+            Class<?>[] classes = new Class<?>[values.length];
+            for (int i = 0; i < values.length; i++) {
+                classes[i] = values[i].getClass();
+            }
+            List<Class<?>> key = Arrays.asList(classes);
+            StubPreparedStatement statement = typed.get(key);
+            if (statement == null) {
+                ColumnDefinitions.Definition[] definitions = new ColumnDefinitions.Definition[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    definitions[i] = new ColumnDefinitions.Definition("simplex", "stub", "v" + i, CodecRegistry.DEFAULT_INSTANCE.codecFor(values[i]).getCqlType());
+                }
+                statement = new StubPreparedStatement(query, new ColumnDefinitions(definitions, CodecRegistry.DEFAULT_INSTANCE));
+                typed.put(key, statement);
+            }
+            return statement;
+        }
+
+        @Override
+        public ColumnDefinitions getVariables() {
+            return variables != null ? variables : ColumnDefinitions.EMPTY;
+        }
+
+        @Override
+        public BoundStatement bind(Object... values) {
+            if (variables == null) {
+                return typed(values).bind(values);
+            }
+            return new BoundStatement(this).bind(values);
+        }
+
+        @Override
+        public BoundStatement bind() {
+            return bind(new Object[0]);
+        }
+
+        @Override
+        public PreparedStatement setRoutingKey(ByteBuffer routingKey) {
+            return this;
+        }
+
+        @Override
+        public PreparedStatement setRoutingKey(ByteBuffer... routingKeyComponents) {
+            return this;
+        }
+
+        @Override
+        public ByteBuffer getRoutingKey() {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement setConsistencyLevel(ConsistencyLevel consistency) {
+            return this;
+        }
+
+        @Override
+        public ConsistencyLevel getConsistencyLevel() {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement setSerialConsistencyLevel(ConsistencyLevel serialConsistency) {
+            return this;
+        }
+
+        @Override
+        public ConsistencyLevel getSerialConsistencyLevel() {
+            return null;
+        }
+
+        @Override
+        public String getQueryString() {
+            return query;
+        }
+
+        @Override
+        public String getQueryKeyspace() {
+            return "simplex";
+        }
+
+        @Override
+        public PreparedStatement enableTracing() {
+            return this;
+        }
+
+        @Override
+        public PreparedStatement disableTracing() {
+            return this;
+        }
+
+        @Override
+        public boolean isTracing() {
+            return false;
+        }
+
+        @Override
+        public PreparedStatement setRetryPolicy(RetryPolicy policy) {
+            return this;
+        }
+
+        @Override
+        public RetryPolicy getRetryPolicy() {
+            return null;
+        }
+
+        @Override
+        public PreparedId getPreparedId() {
+            return preparedId;
+        }
+
+        @Override
+        public Map<String, ByteBuffer> getIncomingPayload() {
+            return null;
+        }
+
+        @Override
+        public Map<String, ByteBuffer> getOutgoingPayload() {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement setOutgoingPayload(Map<String, ByteBuffer> payload) {
+            return this;
+        }
+
+        @Override
+        public CodecRegistry getCodecRegistry() {
+            return CodecRegistry.DEFAULT_INSTANCE;
+        }
+
+        @Override
+        public PreparedStatement setIdempotent(Boolean idempotent) {
+            return this;
+        }
+
+        @Override
+        public Boolean isIdempotent() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.StubDriver;
+import com.datastax.driver.core.UDTValue;
+
+/**
+ * Maps rows of the driver, with a set and a user defined type column, to beans with the bean
+ * format and by hand, reading the columns by name as routes usually do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanMappingBenchmark {
+
+    @Param({"10", "1000"})
+    private int rows;
+
+    private List<Row> songs;
+    private IResultSetFormatStrategy bean;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        songs = StubDriver.songRows(rows);
+        bean = ResultSetFormatStrategies.fromName("bean:" + SongBean.class.getName());
+    }
+
+    @Benchmark
+    public Object bean() {
+        return bean.getResult(StubDriver.resultSet(songs));
+    }
+
+    @Benchmark
+    public Object manual() {
+        ResultSet resultSet = StubDriver.resultSet(songs);
+        List<SongBean> beans = new ArrayList<SongBean>(resultSet.getAvailableWithoutFetching());
+        while (!resultSet.isExhausted()) {
+            Row row = resultSet.one();
+            SongBean song = new SongBean();
+            song.setId(row.getInt("id"));
+            song.setTitle(row.getString("title"));
+            song.setAlbum(row.getString("album"));
+            song.setArtist(row.getString("artist"));
+            song.setTags(row.getSet("tags", String.class));
+            UDTValue value = row.getUDTValue("home");
+            AddressBean home = new AddressBean();
+            home.setStreet(value.getString("street"));
+            home.setZipCode(value.getInt("zip_code"));
+            song.setHome(home);
+            beans.add(song);
+        }
+        return beans;
+    }
+
+    public static class SongBean {
+
+        private int id;
+        private String title;
+        private String album;
+        private String artist;
+        private Set<String> tags;
+        private AddressBean home;
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public void setAlbum(String album) {
+            this.album = album;
+        }
+
+        public void setArtist(String artist) {
+            this.artist = artist;
+        }
+
+        public void setTags(Set<String> tags) {
+            this.tags = tags;
+        }
+
+        public void setHome(AddressBean home) {
+            this.home = home;
+        }
+    }
+
+    public static class AddressBean {
+
+        private String street;
+        private int zipCode;
+
+        public void setStreet(String street) {
+            this.street = street;
+        }
+
+        public void setZipCode(int zipCode) {
+            this.zipCode = zipCode;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.StubDriver;
+
+/**
+ * Creates the statement of each operation from the headers of an exchange, against a stub session:
+ * the prepared statements come from the statement cache, so this measures the header decoding and
+ * the binding of the values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerStatementBenchmark {
+
+    @Param({"selectAll", "selectAllWhere", "selectColumn", "selectColumnWhere", "insert", "update", "deleteColumnWhere",
+        "deleteWhere", "incrCounter", "decrCounter", "batchOperation", "createIndex", "dropIndex"})
+    private CassandraOperations operation;
+
+    private CamelContext context;
+    private CassandraProducer producer;
+    private Session session;
+    private Exchange exchange;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        context.start();
+        CassandraEndpoint endpoint = context.getEndpoint("cassandra:cluster?keyspace=simplex&table=songs", CassandraEndpoint.class);
+        producer = new CassandraProducer(endpoint);
+        producer.start();
+        session = StubDriver.session();
+        exchange = createExchange(operation);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        producer.stop();
+        context.stop();
+    }
+
+    @Benchmark
+    public Statement createStatement() throws Exception {
+        return producer.createStatement(operation, exchange, session);
+    }
+
+    private Exchange createExchange(CassandraOperations operation) {
+        Exchange exchange = new DefaultExchange(context);
+        Message in = exchange.getIn();
+        in.setBody("");
+        switch (operation) {
+        case selectAll:
+            in.setHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER, 10);
+            break;
+        case selectColumn:
+            in.setHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN, "title");
+            in.setHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER, 10);
+            break;
+        case selectColumnWhere:
+            in.setHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN, "title");
+            where(in);
+            break;
+        case insert:
+            Set<String> tags = new HashSet<String>();
+            tags.add("1984");
+            HashMap<String, Object> insert = new HashMap<String, Object>();
+            insert.put("id", 1);
+            insert.put("title", "Fade To Black");
+            insert.put("album", "Ride the Lightning");
+            insert.put("artist", "Metallica");
+            insert.put("tags", tags);
+            in.setHeader(CassandraConstants.CASSANDRA_INSERT_OBJECT, insert);
+            break;
+        case update:
+            HashMap<String, Object> update = new HashMap<String, Object>();
+            update.put("title", "Fade To Black");
+            update.put("album", "Ride the Lightning");
+            in.setHeader(CassandraConstants.CASSANDRA_UPDATE_OBJECT, update);
+            where(in);
+            break;
+        case deleteColumnWhere:
+            in.setHeader(CassandraConstants.CASSANDRA_DELETE_COLUMN, "title");
+            where(in);
+            break;
+        case incrCounter:
+        case decrCounter:
+            in.setHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN, "like");
+            in.setHeader(CassandraConstants.CASSANDRA_COUNTER_VALUE, 1L);
+            where(in);
+            break;
+        case batchOperation:
+            List<Object[]> values = new ArrayList<Object[]>();
+            for (int i = 0; i < 10; i++) {
+                values.add(new Object[] {i, "Title " + i, "Ride the Lightning", "Metallica"});
+            }
+            in.setHeader(CassandraConstants.CASSANDRA_BATCH_QUERY, "INSERT INTO songs (id, title, album, artist) VALUES (?, ?, ?, ?)");
+            in.setHeader(CassandraConstants.CASSANDRA_BATCH_QUERY_LIST, values);
+            break;
+        case createIndex:
+            in.setHeader(CassandraConstants.CASSANDRA_INDEX_COLUMN, "album");
+            in.setHeader(CassandraConstants.CASSANDRA_INDEX_NAME, "album_idx");
+            break;
+        case dropIndex:
+            in.setHeader(CassandraConstants.CASSANDRA_INDEX_NAME, "album_idx");
+            break;
+        default:
+            where(in);
+        }
+        return exchange;
+    }
+
+    private static void where(Message in) {
+        in.setHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN, "id");
+        in.setHeader(CassandraConstants.CASSANDRA_WHERE_VALUE, 1);
+        in.setHeader(CassandraConstants.CASSANDRA_OPERATOR, "eq");
+    }
+}
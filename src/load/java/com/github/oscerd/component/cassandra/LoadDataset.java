@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * The synthetic rows of the songs table driven by {@link LoadHarness}: the keys of the
+ * workload are drawn from a uniform or a zipfian distribution over the rows, so that a
+ * few hot partitions take most of the requests.
+ */
+class LoadDataset {
+
+    static final String INSERT = "INSERT INTO simplex.songs (id, title, album, artist, data) VALUES (?, ?, ?, ?, ?)";
+
+    private final int rows;
+    private final int rowSize;
+    private final boolean zipfian;
+    private final double skew;
+
+    LoadDataset(int rows, int rowSize, String distribution, double skew) {
+        if (!distribution.equals("uniform") && !distribution.equals("zipf")) {
+            throw new IllegalArgumentException("Key distribution not supported. Value: " + distribution);
+        }
+        this.rows = rows;
+        this.rowSize = rowSize;
+        this.zipfian = distribution.equals("zipf");
+        this.skew = skew;
+    }
+
+    /**
+     * Draws a key, the lowest keys being the hottest ones with the zipfian distribution.
+     */
+    int nextKey(Random random) {
+        if (!zipfian) {
+            return random.nextInt(rows);
+        }
+        // inverse transform of the continuous power law x^-skew over [1, rows + 1)
+        double u = random.nextDouble();
+        double rank;
+        if (Math.abs(skew - 1) < 1e-9) {
+            rank = Math.pow(rows + 1, u);
+        } else {
+            double exponent = 1 - skew;
+            rank = Math.pow((Math.pow(rows + 1, exponent) - 1) * u + 1, 1 / exponent);
+        }
+        return Math.min(rows - 1, (int) rank - 1);
+    }
+
+    /**
+     * Returns the columns of the row with the given key, with a payload of rowSize random bytes.
+     */
+    Map<String, Object> row(int id, Random random) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("title", "Song " + id);
+        row.put("album", "Album " + (id % 1000));
+        row.put("artist", "Artist " + (id % 100));
+        byte[] data = new byte[rowSize];
+        random.nextBytes(data);
+        row.put("data", ByteBuffer.wrap(data));
+        return row;
+    }
+
+    /**
+     * Writes every row of the dataset straight with the driver, keeping at most concurrency
+     * writes in flight, and returns the number of failed writes.
+     */
+    long generate(Session session, int concurrency) throws InterruptedException {
+        PreparedStatement insert = session.prepare(INSERT);
+        final Semaphore inFlight = new Semaphore(concurrency);
+        final AtomicLong errors = new AtomicLong();
+        Random random = ThreadLocalRandom.current();
+        int progress = Math.max(1, rows / 10);
+        for (int id = 0; id < rows; id++) {
+            inFlight.acquire();
+            Map<String, Object> row = row(id, random);
+            Futures.addCallback(session.executeAsync(insert.bind(id, row.get("title"), row.get("album"), row.get("artist"), row.get("data"))),
+                    new FutureCallback<ResultSet>() {
+                        @Override
+                        public void onSuccess(ResultSet result) {
+                            inFlight.release();
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            errors.incrementAndGet();
+                            inFlight.release();
+                        }
+                    });
+            if ((id + 1) % progress == 0) {
+                System.out.printf("Generated %d of %d rows%n", id + 1, rows);
+            }
+        }
+        inFlight.acquire(concurrency);
+        return errors.get();
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+
+/**
+ * Drives Camel routes through the producer, and optionally the scan consumer, against a
+ * local Cassandra, and prints the throughput, latency percentiles and errors of each operation.
+ *
+ * The workload reads and writes the songs table of {@link CassandraBaseTest}. In the open loop
+ * the requests are scheduled at the target rate and their latency is measured from the time
+ * they were scheduled at, so that a stalled request delays the following ones instead of hiding
+ * them (coordinated omission). In the closed loop each thread sends its next request when the
+ * previous one completes, paced at its share of the target rate when there is one.
+ *
+ * With load.connectPerExchange the requests are sent with a cluster connected and closed for
+ * each of them, as the producer did before the endpoint kept its session, which gives the
+ * baseline the latencies of the endpoint compare with.
+ *
+ * The harness is configured with system properties, see the README.
+ */
+public final class LoadHarness {
+
+    private final String host = System.getProperty("load.host", "127.0.0.1");
+    private final String port = System.getProperty("load.port", "9042");
+    private final String mode = System.getProperty("load.mode", "open");
+    private final double rate = Double.parseDouble(System.getProperty("load.rate", "1000"));
+    private final int threads = Integer.getInteger("load.threads", 32);
+    private final int warmup = Integer.getInteger("load.warmup", 10);
+    private final int duration = Integer.getInteger("load.duration", 60);
+    private final double readRatio = Double.parseDouble(System.getProperty("load.readRatio", "0.5"));
+    private final int rows = Integer.getInteger("load.rows", 1000000);
+    private final int rowSize = Integer.getInteger("load.rowSize", 256);
+    private final String distribution = System.getProperty("load.distribution", "zipf");
+    private final double skew = Double.parseDouble(System.getProperty("load.skew", "0.99"));
+    private final boolean generate = Boolean.getBoolean("load.generate");
+    private final int generateConcurrency = Integer.getInteger("load.generateConcurrency", 256);
+    private final boolean consumer = Boolean.getBoolean("load.consumer");
+    private final String endpointOptions = System.getProperty("load.endpointOptions", "");
+    private final boolean connectPerExchange = Boolean.getBoolean("load.connectPerExchange");
+
+    private final LoadDataset dataset = new LoadDataset(rows, rowSize, distribution, skew);
+    private final Operation reads = new Operation("read");
+    private final Operation writes = new Operation("write");
+    private final LongAdder scannedRows = new LongAdder();
+    private final LongAdder scannedPages = new LongAdder();
+
+    private ProducerTemplate template;
+    private long start;
+    private long warmupEnd;
+    private long end;
+
+    public static void main(String[] args) throws Exception {
+        new LoadHarness().run();
+    }
+
+    private void run() throws Exception {
+        if (!mode.equals("open") && !mode.equals("closed")) {
+            throw new IllegalArgumentException("Load mode not supported. Value: " + mode);
+        }
+        if (mode.equals("open") && rate <= 0) {
+            throw new IllegalArgumentException("The open loop needs a target rate. Value: " + rate);
+        }
+        Cluster cluster = Cluster.builder().addContactPoint(host).withPort(Integer.parseInt(port)).build();
+        try {
+            Session session = cluster.connect();
+            CassandraBaseTest.createSchema(session);
+            if (generate) {
+                long began = System.nanoTime();
+                long errors = dataset.generate(session, generateConcurrency);
+                System.out.printf("Generated %d rows of %d bytes in %d s, %d errors%n", rows, rowSize,
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - began), errors);
+            }
+        } finally {
+            cluster.close();
+        }
+
+        CamelContext context = new DefaultCamelContext();
+        context.addRoutes(createRouteBuilder());
+        context.start();
+        try {
+            template = context.createProducerTemplate();
+            System.out.printf("Running a %s loop workload%s%s at %.0f ops/s with %d threads: %.0f%% reads, %d rows of %d bytes, %s keys%n",
+                    mode, consumer ? " with a scan" : "", connectPerExchange ? " connecting per request" : "", rate, threads,
+                    readRatio * 100, rows, rowSize, distribution);
+            start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            warmupEnd = start + TimeUnit.SECONDS.toNanos(warmup);
+            end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            final AtomicLong next = new AtomicLong();
+            for (int i = 0; i < threads; i++) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mode.equals("open")) {
+                            openLoop(next);
+                        } else {
+                            closedLoop();
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            report();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } finally {
+            context.stop();
+        }
+        summary();
+    }
+
+    /**
+     * Sends the requests of the global schedule: a thread picks the next slot of the schedule
+     * when its previous request completes, so the requests fall behind the schedule when every
+     * thread is busy, and their latency grows accordingly.
+     */
+    private void openLoop(AtomicLong next) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        Random random = ThreadLocalRandom.current();
+        while (true) {
+            long intended = start + next.getAndIncrement() * interval;
+            if (intended >= end) {
+                return;
+            }
+            waitUntil(intended);
+            Operation operation = random.nextDouble() < readRatio ? reads : writes;
+            send(operation, random);
+            operation.record(System.nanoTime() - intended, 0);
+        }
+    }
+
+    /**
+     * Sends each request when the previous one completes. With a target rate the requests of a
+     * thread are paced at its share of it, and the samples a slow request prevented from being
+     * sent are back-filled in the histogram from the expected interval between requests.
+     */
+    private void closedLoop() {
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate) : 0;
+        Random random = ThreadLocalRandom.current();
+        long intended = start;
+        while (intended < end) {
+            waitUntil(intended);
+            Operation operation = random.nextDouble() < readRatio ? reads : writes;
+            long sent = System.nanoTime();
+            send(operation, random);
+            long completed = System.nanoTime();
+            operation.record(completed - sent, interval);
+            intended = interval > 0 ? Math.max(intended + interval, completed) : completed;
+        }
+    }
+
+    private void send(Operation operation, Random random) {
+        int key = dataset.nextKey(random);
+        if (connectPerExchange) {
+            sendConnected(operation, key, random);
+            return;
+        }
+        try {
+            if (operation == reads) {
+                Map<String, Object> headers = new HashMap<String, Object>();
+                headers.put(CassandraConstants.CASSANDRA_WHERE_COLUMN, "id");
+                headers.put(CassandraConstants.CASSANDRA_WHERE_VALUE, key);
+                headers.put(CassandraConstants.CASSANDRA_OPERATOR, "eq");
+                template.requestBodyAndHeaders("direct:read", "", headers);
+            } else {
+                template.requestBodyAndHeader("direct:write", "", CassandraConstants.CASSANDRA_INSERT_OBJECT, dataset.row(key, random));
+            }
+        } catch (Exception e) {
+            operation.error(e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Sends the request through a cluster built and connected for it, and closed once it completes.
+     */
+    private void sendConnected(Operation operation, int key, Random random) {
+        Cluster cluster = Cluster.builder().addContactPoint(host).withPort(Integer.parseInt(port)).build();
+        try {
+            Session session = cluster.connect("simplex");
+            if (operation == reads) {
+                session.execute("SELECT * FROM songs WHERE id = ?", key);
+            } else {
+                Map<String, Object> row = dataset.row(key, random);
+                session.execute(LoadDataset.INSERT, row.get("id"), row.get("title"), row.get("album"), row.get("artist"), row.get("data"));
+            }
+        } catch (Exception e) {
+            operation.error(e);
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private static void waitUntil(long time) {
+        long wait;
+        while ((wait = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Prints the throughput and latencies of each second until the end of the run, accumulating
+     * the seconds after the warmup in the totals of the summary.
+     */
+    private void report() {
+        long tick = start;
+        long scannedBefore = 0;
+        while (tick < end) {
+            tick += TimeUnit.SECONDS.toNanos(1);
+            waitUntil(tick);
+            boolean measured = tick > warmupEnd;
+            long second = TimeUnit.NANOSECONDS.toSeconds(tick - start);
+            StringBuilder line = new StringBuilder(String.format("%4d s%s", second, measured ? "" : " (warmup)"));
+            line.append(reads.interval(measured)).append(writes.interval(measured));
+            if (consumer) {
+                long scanned = scannedRows.sum();
+                line.append(String.format(" | scan %d rows/s", scanned - scannedBefore));
+                scannedBefore = scanned;
+            }
+            System.out.println(line);
+        }
+    }
+
+    private void summary() {
+        double seconds = duration;
+        System.out.println();
+        System.out.printf("%-6s %10s %10s %10s %10s %10s %10s %8s%n", "", "ops", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        for (Operation operation : new Operation[] {reads, writes}) {
+            Histogram total = operation.total;
+            System.out.printf("%-6s %10d %10.0f %10.3f %10.3f %10.3f %10.3f %8d%n", operation.name, total.getTotalCount(),
+                    total.getTotalCount() / seconds, millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                    millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()), operation.errorCount());
+            for (Map.Entry<String, LongAdder> error : operation.errors.entrySet()) {
+                System.out.printf("       %s: %d%n", error.getKey(), error.getValue().sum());
+            }
+        }
+        if (consumer) {
+            System.out.printf("scan   %d rows in %d pages%n", scannedRows.sum(), scannedPages.sum());
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private RouteBuilder createRouteBuilder() {
+        final String endpoint = "cassandra:cassandraConnection?host=" + host + "&port=" + port + "&keyspace=simplex&table=songs" + endpointOptions;
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:read")
+                    .to(endpoint + "&operation=selectAllWhere");
+                from("direct:write")
+                    .to(endpoint + "&operation=insert");
+                if (consumer) {
+                    from(endpoint + "&scan=true&splitMode=page&fetchSize=1000&delay=1000")
+                        .process(new Processor() {
+                            @Override
+                            public void process(Exchange exchange) throws Exception {
+                                scannedRows.add(exchange.getIn().getBody(List.class).size());
+                                scannedPages.increment();
+                            }
+                        });
+                }
+            }
+        };
+    }
+
+    /**
+     * The latencies and errors of the requests of an operation: the recorder collects the
+     * latencies of the current second, added to the total once the warmup is over.
+     */
+    private final class Operation {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+        private Histogram interval;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void record(long latency, long expectedInterval) {
+            recorder.recordValueWithExpectedInterval(latency, expectedInterval);
+        }
+
+        void error(Throwable cause) {
+            if (System.nanoTime() < warmupEnd) {
+                return;
+            }
+            String type = cause.getClass().getSimpleName();
+            LongAdder count = errors.get(type);
+            if (count == null) {
+                LongAdder created = new LongAdder();
+                count = errors.putIfAbsent(type, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.increment();
+        }
+
+        long errorCount() {
+            long count = 0;
+            for (LongAdder error : errors.values()) {
+                count += error.sum();
+            }
+            return count;
+        }
+
+        String interval(boolean measured) {
+            interval = recorder.getIntervalHistogram(interval);
+            if (measured) {
+                total.add(interval);
+            }
+            return String.format(" | %s %d ops/s p50 %.3f p99 %.3f p999 %.3f ms", name, interval.getTotalCount(),
+                    millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)),
+                    millis(interval.getValueAtPercentile(99.9)));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.camel.RuntimeCamelException;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.GettableByIndexData;
+import com.datastax.driver.core.UDTValue;
+import com.datastax.driver.core.UserType;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * Maps rows to instances of a bean class, for the bean format. The setters and public fields
+ * of the class are resolved once as method handles, and the columns of a result set are
+ * matched to them once per column definitions: the compiled mappings are kept in a bounded,
+ * least recently used cache, so mapping a row only reads its values by index and invokes the
+ * handles. Columns match the properties ignoring case and underscores, user defined types map
+ * to nested beans, also inside lists, sets and map values, and unmatched columns are ignored.
+ */
+class CassandraBeanMapper<T> {
+
+    static final int MAXIMUM_MAPPINGS = 64;
+
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Map<String, Property> properties = new HashMap<String, Property>();
+    private final Map<String, Mapping> mappings = new LinkedHashMap<String, Mapping>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mapping> eldest) {
+            return size() > MAXIMUM_MAPPINGS;
+        }
+    };
+    // the mappers of the nested beans of user defined types
+    private final Map<Class<?>, CassandraBeanMapper<?>> nested;
+
+    CassandraBeanMapper(Class<T> type) {
+        this(type, new HashMap<Class<?>, CassandraBeanMapper<?>>());
+    }
+
+    private CassandraBeanMapper(Class<T> type, Map<Class<?>, CassandraBeanMapper<?>> nested) {
+        this.type = type;
+        this.nested = nested;
+        nested.put(type, this);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+            for (Field field : type.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                    properties.put(normalize(field.getName()), new Property(lookup.unreflectSetter(field).asType(SETTER), field.getGenericType()));
+                }
+            }
+            // setters take precedence over the fields of the same name
+            for (Method method : type.getMethods()) {
+                if (method.getName().length() > 3 && method.getName().startsWith("set") && method.getParameterTypes().length == 1
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    properties.put(normalize(method.getName().substring(3)), new Property(lookup.unreflect(method).asType(SETTER), method.getGenericParameterTypes()[0]));
+                }
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("The bean class " + type.getName() + " must have a public constructor without arguments", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("The bean class " + type.getName() + " must be public", e);
+        }
+    }
+
+    /**
+     * Returns the mapping of rows with the given column definitions, compiling it on a cache miss.
+     */
+    Mapping mapping(ColumnDefinitions columns) {
+        StringBuilder key = new StringBuilder();
+        for (ColumnDefinitions.Definition column : columns) {
+            key.append(column.getName()).append(':').append(column.getType()).append(',');
+        }
+        String shape = key.toString();
+        synchronized (mappings) {
+            Mapping mapping = mappings.get(shape);
+            if (mapping == null) {
+                List<String> names = new ArrayList<String>(columns.size());
+                List<DataType> types = new ArrayList<DataType>(columns.size());
+                for (ColumnDefinitions.Definition column : columns) {
+                    names.add(column.getName());
+                    types.add(column.getType());
+                }
+                mapping = compile(names, types);
+                mappings.put(shape, mapping);
+            }
+            return mapping;
+        }
+    }
+
+    private Mapping compile(List<String> names, List<DataType> types) {
+        List<Integer> indexes = new ArrayList<Integer>();
+        List<MethodHandle> setters = new ArrayList<MethodHandle>();
+        List<Reader> readers = new ArrayList<Reader>();
+        for (int i = 0; i < names.size(); i++) {
+            Property property = properties.get(normalize(names.get(i)));
+            if (property != null) {
+                indexes.add(i);
+                setters.add(property.setter);
+                readers.add(reader(types.get(i), property.type));
+            }
+        }
+        int[] columns = new int[indexes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = indexes.get(i);
+        }
+        return new Mapping(columns, setters.toArray(new MethodHandle[0]), readers.toArray(new Reader[0]));
+    }
+
+    /**
+     * Returns the reader of a value of the given CQL type into the given Java type, mapping the
+     * user defined types to nested beans unless the Java type is UDTValue.
+     */
+    private Reader reader(DataType cqlType, Type javaType) {
+        Class<?> raw = TypeToken.of(javaType).getRawType();
+        if (cqlType instanceof UserType && raw != UDTValue.class) {
+            final CassandraBeanMapper<?>.Mapping udt = nestedMapping(raw, (UserType) cqlType);
+            return new Reader() {
+                @Override
+                public Object read(GettableByIndexData data, int index) {
+                    UDTValue value = data.getUDTValue(index);
+                    return value != null ? udt.map(value) : null;
+                }
+            };
+        }
+        List<DataType> arguments = cqlType.getTypeArguments();
+        if (cqlType.isCollection() && arguments.get(arguments.size() - 1) instanceof UserType && javaType instanceof ParameterizedType) {
+            Type[] javaArguments = ((ParameterizedType) javaType).getActualTypeArguments();
+            Class<?> element = TypeToken.of(javaArguments[javaArguments.length - 1]).getRawType();
+            if (element != UDTValue.class) {
+                final CassandraBeanMapper<?>.Mapping udt = nestedMapping(element, (UserType) arguments.get(arguments.size() - 1));
+                if (cqlType.getName() == DataType.Name.MAP) {
+                    final TypeToken<?> key = TypeToken.of(javaArguments[0]);
+                    return new Reader() {
+                        @Override
+                        public Object read(GettableByIndexData data, int index) {
+                            Map<?, UDTValue> values = data.getMap(index, key, TypeToken.of(UDTValue.class));
+                            Map<Object, Object> beans = new LinkedHashMap<Object, Object>(values.size() * 2);
+                            for (Map.Entry<?, UDTValue> value : values.entrySet()) {
+                                beans.put(value.getKey(), value.getValue() != null ? udt.map(value.getValue()) : null);
+                            }
+                            return beans;
+                        }
+                    };
+                }
+                final boolean set = cqlType.getName() == DataType.Name.SET;
+                return new Reader() {
+                    @Override
+                    public Object read(GettableByIndexData data, int index) {
+                        Collection<UDTValue> values = set ? data.getSet(index, UDTValue.class) : data.getList(index, UDTValue.class);
+                        Collection<Object> beans = set ? new LinkedHashSet<Object>(values.size() * 2) : new ArrayList<Object>(values.size());
+                        for (UDTValue value : values) {
+                            beans.add(value != null ? udt.map(value) : null);
+                        }
+                        return beans;
+                    }
+                };
+            }
+        }
+        final TypeToken<?> token = TypeToken.of(javaType).wrap();
+        return new Reader() {
+            @Override
+            public Object read(GettableByIndexData data, int index) {
+                return data.get(index, token);
+            }
+        };
+    }
+
+    private CassandraBeanMapper<?>.Mapping nestedMapping(Class<?> beanType, UserType userType) {
+        CassandraBeanMapper<?> mapper = nested.get(beanType);
+        if (mapper == null) {
+            mapper = new CassandraBeanMapper<Object>(cast(beanType), nested);
+        }
+        List<String> names = new ArrayList<String>(userType.size());
+        List<DataType> types = new ArrayList<DataType>(userType.size());
+        for (UserType.Field field : userType) {
+            names.add(field.getName());
+            types.add(field.getType());
+        }
+        return mapper.compile(names, types);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> cast(Class<?> type) {
+        return (Class<Object>) type;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class Property {
+
+        private final MethodHandle setter;
+        private final Type type;
+
+        private Property(MethodHandle setter, Type type) {
+            this.setter = setter;
+            this.type = type;
+        }
+    }
+
+    private interface Reader {
+
+        Object read(GettableByIndexData data, int index);
+
+    }
+
+    /**
+     * The columns of a result set, or the fields of a user defined type, matched to the properties
+     * of the bean class.
+     */
+    final class Mapping {
+
+        private final int[] columns;
+        private final MethodHandle[] setters;
+        private final Reader[] readers;
+
+        private Mapping(int[] columns, MethodHandle[] setters, Reader[] readers) {
+            this.columns = columns;
+            this.setters = setters;
+            this.readers = readers;
+        }
+
+        @SuppressWarnings("unchecked")
+        T map(GettableByIndexData data) {
+            try {
+                Object bean = (Object) constructor.invokeExact();
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = readers[i].read(data, columns[i]);
+                    // null values leave the default of the property, which may be a primitive
+                    if (value != null) {
+                        setters[i].invokeExact(bean, value);
+                    }
+                }
+                return (T) bean;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeCamelException("Error mapping a row to " + type.getName(), t);
+            }
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+
+/**
+ * The body of the columnar format: the rows of a result set decoded in a vector per column.
+ * Int, bigint, counter, timestamp (as epoch milliseconds), double, float and boolean columns
+ * are decoded in primitive arrays, text columns in an array of codes into a dictionary of
+ * their distinct values, and the other columns in an array of objects. The rows whose value
+ * is null are marked in the null bitmap of the column, their primitive value being zero.
+ */
+public class CassandraColumns {
+
+    private final int rowCount;
+    private final List<Column> columns;
+    private final Map<String, Column> columnsByName = new HashMap<String, Column>();
+
+    private CassandraColumns(int rowCount, List<Column> columns) {
+        this.rowCount = rowCount;
+        this.columns = Collections.unmodifiableList(columns);
+        for (Column column : columns) {
+            columnsByName.put(column.getName(), column);
+        }
+    }
+
+    /**
+     * Decodes the rows of the result set read by the iterator, after resolving the vector of
+     * each column once.
+     */
+    static CassandraColumns decode(ResultSet resultSet, Iterator<Row> rows) {
+        ColumnDefinitions definitions = resultSet.getColumnDefinitions();
+        int capacity = Math.max(16, resultSet.getAvailableWithoutFetching());
+        Column[] vectors = new Column[definitions.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = column(definitions.getName(i), definitions.getType(i), capacity);
+        }
+        int rowCount = 0;
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            for (int i = 0; i < vectors.length; i++) {
+                if (row.isNull(i)) {
+                    vectors[i].addNull();
+                } else {
+                    vectors[i].add(row, i);
+                }
+            }
+            rowCount++;
+        }
+        for (Column vector : vectors) {
+            vector.trim();
+        }
+        return new CassandraColumns(rowCount, Arrays.asList(vectors));
+    }
+
+    private static Column column(String name, DataType type, int capacity) {
+        switch (type.getName()) {
+        case INT:
+            return new IntColumn(name, type, capacity);
+        case BIGINT:
+        case COUNTER:
+        case TIMESTAMP:
+            return new LongColumn(name, type, capacity);
+        case DOUBLE:
+        case FLOAT:
+            return new DoubleColumn(name, type, capacity);
+        case BOOLEAN:
+            return new BooleanColumn(name, type, capacity);
+        case TEXT:
+        case VARCHAR:
+        case ASCII:
+            return new TextColumn(name, type, capacity);
+        default:
+            return new ObjectColumn(name, type, capacity);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the column with the given name, or null when there is none.
+     */
+    public Column getColumn(String name) {
+        return columnsByName.get(name);
+    }
+
+    public Column getColumn(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * A column vector, with the null bitmap of its rows.
+     */
+    public abstract static class Column {
+
+        private final String name;
+        private final DataType type;
+        private final BitSet nulls = new BitSet();
+        int size;
+
+        Column(String name, DataType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataType getType() {
+            return type;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        public BitSet getNulls() {
+            return nulls;
+        }
+
+        /**
+         * Returns the value of the row, boxed, or null.
+         */
+        public abstract Object getObject(int row);
+
+        /**
+         * Adds the value of the row, or the zero value of the vector when the row is null.
+         */
+        abstract void add(Row row, int index);
+
+        abstract void trim();
+
+        void addNull() {
+            nulls.set(size);
+            add(null, -1);
+        }
+
+        static int grown(int length) {
+            return length + (length >> 1) + 1;
+        }
+    }
+
+    public static final class IntColumn extends Column {
+
+        private int[] values;
+
+        IntColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            values = new int[capacity];
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grown(size));
+            }
+            values[size++] = row != null ? row.getInt(index) : 0;
+        }
+
+        @Override
+        void trim() {
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+
+    /**
+     * A bigint, counter or timestamp column, the timestamps as milliseconds since the epoch.
+     */
+    public static final class LongColumn extends Column {
+
+        private final boolean timestamp;
+        private long[] values;
+
+        LongColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            timestamp = type.getName() == DataType.Name.TIMESTAMP;
+            values = new long[capacity];
+        }
+
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grown(size));
+            }
+            if (row == null) {
+                values[size++] = 0;
+            } else {
+                values[size++] = timestamp ? row.getTimestamp(index).getTime() : row.getLong(index);
+            }
+        }
+
+        @Override
+        void trim() {
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+
+    /**
+     * A double or float column.
+     */
+    public static final class DoubleColumn extends Column {
+
+        private final boolean single;
+        private double[] values;
+
+        DoubleColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            single = type.getName() == DataType.Name.FLOAT;
+            values = new double[capacity];
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grown(size));
+            }
+            if (row == null) {
+                values[size++] = 0;
+            } else {
+                values[size++] = single ? row.getFloat(index) : row.getDouble(index);
+            }
+        }
+
+        @Override
+        void trim() {
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+
+    public static final class BooleanColumn extends Column {
+
+        private boolean[] values;
+
+        BooleanColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            values = new boolean[capacity];
+        }
+
+        public boolean[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grown(size));
+            }
+            values[size++] = row != null && row.getBool(index);
+        }
+
+        @Override
+        void trim() {
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+
+    /**
+     * A text column, dictionary encoded: the code of a row is the index of its value in the
+     * dictionary of the distinct values of the column, -1 for the null values.
+     */
+    public static final class TextColumn extends Column {
+
+        private final Map<String, Integer> codesByValue = new HashMap<String, Integer>();
+        private final List<String> values = new ArrayList<String>();
+        private int[] codes;
+        private String[] dictionary;
+
+        TextColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            codes = new int[capacity];
+        }
+
+        public int[] getCodes() {
+            return codes;
+        }
+
+        public String[] getDictionary() {
+            return dictionary;
+        }
+
+        public String get(int row) {
+            return codes[row] < 0 ? null : dictionary[codes[row]];
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return get(row);
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, grown(size));
+            }
+            if (row == null) {
+                codes[size++] = -1;
+                return;
+            }
+            String value = row.getString(index);
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = values.size();
+                codesByValue.put(value, code);
+                values.add(value);
+            }
+            codes[size++] = code;
+        }
+
+        @Override
+        void trim() {
+            if (codes.length != size) {
+                codes = Arrays.copyOf(codes, size);
+            }
+            dictionary = values.toArray(new String[values.size()]);
+            codesByValue.clear();
+            values.clear();
+        }
+    }
+
+    /**
+     * A column of another type, holding the values as the driver returns them by default.
+     */
+    public static final class ObjectColumn extends Column {
+
+        private Object[] values;
+
+        ObjectColumn(String name, DataType type, int capacity) {
+            super(name, type);
+            values = new Object[capacity];
+        }
+
+        public Object[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return values[row];
+        }
+
+        @Override
+        void add(Row row, int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grown(size));
+            }
+            values[size++] = row != null ? row.getObject(index) : null;
+        }
+
+        @Override
+        void trim() {
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+}
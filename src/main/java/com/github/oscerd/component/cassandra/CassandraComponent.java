@@ -39,6 +39,8 @@ public class CassandraComponent extends DefaultComponent {
             String beanRef = remaining.substring(5);
             endpoint.setBeanRef(beanRef);
         } 
+        // a bean format class that cannot be resolved fails the creation of the endpoint
+        endpoint.defineFormatStrategy();
         return endpoint;
     }
     
@@ -27,6 +27,7 @@ public final class CassandraConstants {
     public static final String CASSANDRA_DELETE_COLUMN = "CamelCassandraDeleteColumn";
     public static final String CASSANDRA_WHERE_COLUMN = "CamelCassandraWhereClause";
     public static final String CASSANDRA_WHERE_VALUE = "CamelCassandraWhereValue";
+    public static final String CASSANDRA_WHERE_PREDICATES = "CamelCassandraWherePredicates";
     public static final String CASSANDRA_OPERATOR = "CamelCassandraOperator";
     public static final String CASSANDRA_ORDERBY_COLUMN = "CamelCassandraOrderByColumn";
     public static final String CASSANDRA_ORDER_DIRECTION = "CamelCassandraOrderDirection";
@@ -39,6 +40,8 @@ public final class CassandraConstants {
     public static final String CASSANDRA_LIMIT_NUMBER = "CamelCassandraLimitNumber";
     public static final String CASSANDRA_INDEX_COLUMN = "CamelCassandraIndexColumn";
     public static final String CASSANDRA_INDEX_NAME = "CamelCassandraIndexName";
+    public static final String CASSANDRA_COUNTER_ACCEPTED = "CamelCassandraCounterAccepted";
+    public static final String CASSANDRA_CQL_PARAMETERS = "CamelCassandraCqlParameters";
    
     private CassandraConstants() {
     }
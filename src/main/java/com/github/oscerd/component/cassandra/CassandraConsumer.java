@@ -16,17 +16,29 @@
  */
 package com.github.oscerd.component.cassandra;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.support.ScheduledPollConsumer;
 import org.apache.camel.util.ObjectHelper;
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 
 /**
@@ -35,6 +47,20 @@ import com.datastax.driver.core.Session;
 public class CassandraConsumer extends ScheduledPollConsumer {
 
     private static final Logger LOG = LoggerFactory.getLogger(CassandraConsumer.class);
+
+    private static final Pattern WHERE = Pattern.compile("\\bwhere\\b", Pattern.CASE_INSENSITIVE);
+    // the clauses following the where clause of a select
+    private static final Pattern AFTER_WHERE = Pattern.compile("\\s+(order\\s+by|per\\s+partition\\s+limit|limit|allow\\s+filtering)\\b", Pattern.CASE_INSENSITIVE);
+
+    private Session session;
+    private PreparedStatement pollingStatement;
+    private PreparedStatement watermarkStatement;
+    private IOffsetStore offsetStore;
+    private String offsetKey;
+    private CassandraTokenRangeScanner scanner;
+    private ExecutorService scanExecutorService;
+    // the rows fetched by the poll in progress, by the ranges of a scan concurrently
+    private final LongAdder fetchedRows = new LongAdder();
     
 	/**
 	 * @param endpoint
@@ -49,46 +75,310 @@ public class CassandraConsumer extends ScheduledPollConsumer {
         return (CassandraEndpoint) super.getEndpoint();
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        session = getEndpoint().getCassandraSession();
+        if (session == null) {
+            throw new CassandraException("The endpoint has no Cassandra session to poll with");
+        }
+        if (getEndpoint().isScan()) {
+            offsetStore = createOffsetStore();
+            offsetKey = getEndpoint().getOffsetKey();
+            if (ObjectHelper.isEmpty(offsetKey)) {
+                offsetKey = getEndpoint().getKeyspace() + ":" + getEndpoint().getTable() + ":scan";
+            }
+            scanExecutorService = getEndpoint().getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "CassandraScan", getEndpoint().getScanThreads());
+            scanner = new CassandraTokenRangeScanner(this, session, offsetStore, offsetKey, scanExecutorService);
+            scanner.start();
+            super.doStart();
+            return;
+        }
+        String pollingQuery = getEndpoint().getPollingQuery();
+        pollingStatement = prepare(pollingQuery);
+        if (!ObjectHelper.isEmpty(getEndpoint().getWatermarkColumn())) {
+            watermarkStatement = prepare(appendWatermarkClause(pollingQuery, getEndpoint().getWatermarkColumn()));
+            offsetStore = createOffsetStore();
+            offsetKey = getEndpoint().getOffsetKey();
+            if (ObjectHelper.isEmpty(offsetKey)) {
+                offsetKey = getEndpoint().getKeyspace() + ":" + pollingQuery;
+            }
+        }
+        super.doStart();
+    }
+
+    private IOffsetStore createOffsetStore() {
+        IOffsetStore store = getEndpoint().getOffsetStoreInstance();
+        if (store == null) {
+            store = OffsetStores.fromName(getEndpoint().getOffsetStore(), getEndpoint(), session);
+            if (store == null) {
+                throw new IllegalArgumentException("Offset store not supported. Value: " + getEndpoint().getOffsetStore());
+            }
+        }
+        return store;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        if (scanner != null) {
+            scanner.stop();
+            scanner = null;
+        }
+        if (scanExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownGraceful(scanExecutorService);
+            scanExecutorService = null;
+        }
+        // the session belongs to the endpoint, which closes it when it stops
+        pollingStatement = null;
+        watermarkStatement = null;
+        offsetStore = null;
+        session = null;
+    }
+
     /**
-    * Method that poll a specific Cassandra instance and work on his data
+    * Method that poll a specific Cassandra instance and work on his data. Depending on the split mode
+    * the whole result set, each page or each row of the polling query becomes an exchange: pages after
+    * the first one are fetched with the paging state of the previous one.
+    * 
+    * With a watermark column the poll only reads the rows after the stored watermark, and stores the
+    * highest watermark it has delivered once the poll has read the whole result set and every exchange of
+    * the poll has been processed successfully.
+    * 
+    * In scan mode the poll scans the whole table, in parallel token ranges.
+    * 
+    * With a rate limit, each query of the poll, page fetches included, waits for its tokens in the
+    * buckets the endpoint shares with the exchanges without a rate limit key.
     * 
     */
     @Override
     protected int poll() throws Exception {
-        String host = getEndpoint().getHost();
-        String[] hostLists = splitHost(host);
-        String port = getEndpoint().getPort();
-        String keySpace = getEndpoint().getKeyspace();
-        String pollingQuery = getEndpoint().getPollingQuery();
-        Cluster cluster = getEndpoint().getCassandraCluster();
-        Cluster.Builder builder;
-        if (hostLists.length == 0) builder = Cluster.builder().addContactPoint(host).withPort(Integer.parseInt(port));
-        else builder = Cluster.builder().addContactPoints(hostLists).withPort(Integer.parseInt(port));
-        if (!ObjectHelper.isEmpty(getEndpoint().getUsername()) && !ObjectHelper.isEmpty(getEndpoint().getPassword())){
-        	builder.withCredentials(getEndpoint().getUsername(), getEndpoint().getPassword());
-        }
-        cluster = builder.build();
-        Session session = cluster.connect(keySpace);
-        ResultSet resultSet = null;
+        CassandraMetrics metrics = getEndpoint().getCassandraMetrics();
+        if (metrics == null) {
+            return scanner != null ? scanner.scan() : pollQuery();
+        }
+        CassandraMetrics.Request request = metrics.start(scanner != null ? "scan" : "poll");
+        fetchedRows.reset();
+        int processed;
         try {
-            resultSet = session.execute(pollingQuery);
+            processed = scanner != null ? scanner.scan() : pollQuery();
         } catch (Exception e) {
-            throw new CassandraException("Error during execution of polling query: " + pollingQuery, e);
-        } finally {
-            session.close();
-            if (!getEndpoint().isExternalCluster) cluster.close();
+            request.done(0, e);
+            throw e;
+        }
+        // the exchanges of the poll are pages or whole results with the page and all split modes
+        request.done(fetchedRows.sum(), null);
+        return processed;
+    }
+
+    /**
+     * Counts rows fetched by the poll in progress.
+     * 
+     * @param rows
+     */
+    void fetched(int rows) {
+        fetchedRows.add(rows);
+    }
+
+    private int pollQuery() throws Exception {
+        BoundStatement statement = createPollingStatement();
+        if (getEndpoint().getFetchSize() > 0) {
+            statement.setFetchSize(getEndpoint().getFetchSize());
         }
+        ResultSet resultSet = execute(statement);
+        CassandraSplitMode splitMode = getEndpoint().getSplitMode();
+        Object watermark = null;
+        boolean succeeded = true;
+        // the watermark is only stored once the whole result set is read: the rows are not
+        // ordered by the watermark, the ones left may have lower ones
+        boolean exhausted = true;
+        int processed = 0;
+        if (splitMode == CassandraSplitMode.all) {
+            if (watermarkStatement != null) {
+                // the rows are read to find the watermark, so they are sent as a list
+                List<Row> rows = resultSet.all();
+                fetched(rows.size());
+                watermark = highestWatermark(rows, watermark);
+                succeeded = processResult(rows);
+            } else {
+                // the route reads the result set, the rows counted are the ones of the first page
+                fetched(resultSet.getAvailableWithoutFetching());
+                succeeded = processResult(resultSet);
+            }
+            processed = 1;
+        } else {
+            while (true) {
+                int available = resultSet.getAvailableWithoutFetching();
+                fetched(available);
+                if (splitMode == CassandraSplitMode.page) {
+                    if (available > 0) {
+                        List<Row> rows = new ArrayList<Row>(available);
+                        for (int i = 0; i < available; i++) {
+                            rows.add(resultSet.one());
+                        }
+                        watermark = highestWatermark(rows, watermark);
+                        succeeded &= processResult(rows);
+                        processed++;
+                    }
+                } else {
+                    for (int i = 0; i < available; i++) {
+                        Row row = resultSet.one();
+                        watermark = highestWatermark(row, watermark);
+                        succeeded &= processResult(row);
+                        processed++;
+                    }
+                }
+                PagingState pagingState = resultSet.getExecutionInfo().getPagingState();
+                if (pagingState == null) {
+                    break;
+                }
+                if (!isRunAllowed()) {
+                    exhausted = false;
+                    break;
+                }
+                statement.setPagingState(pagingState);
+                resultSet = execute(statement);
+            }
+        }
+        if (watermark != null && succeeded && exhausted) {
+            LOG.debug("Storing watermark {} for {}", watermark, offsetKey);
+            offsetStore.setOffset(offsetKey, encodeWatermark(watermark));
+        }
+        return processed;
+    }
+
+    private BoundStatement createPollingStatement() throws CassandraException {
+        if (watermarkStatement != null) {
+            String offset = offsetStore.getOffset(offsetKey);
+            if (offset != null) {
+                return watermarkStatement.bind(decodeWatermark(offset, watermarkStatement.getVariables().getType(0)));
+            }
+        }
+        return pollingStatement.bind();
+    }
+
+    private PreparedStatement prepare(String query) throws CassandraException {
+        try {
+            return session.prepare(query);
+        } catch (Exception e) {
+            throw new CassandraException("Error during preparation of polling query: " + query, e);
+        }
+    }
+
+    private ResultSet execute(BoundStatement statement) throws CassandraException {
+        CassandraRateLimiter rateLimiter = getEndpoint().getRateLimiter();
+        if (rateLimiter != null) {
+            // each page of a poll is a request of the endpoint
+            rateLimiter.acquire(null, session, statement);
+        }
+        try {
+            return session.execute(statement);
+        } catch (Exception e) {
+            throw new CassandraException("Error during execution of polling query: " + getEndpoint().getPollingQuery(), e);
+        }
+    }
+
+    boolean processResult(Object result) throws Exception {
         Exchange exchange = getEndpoint().createExchange();
         Message message = exchange.getIn();
-        fillMessage(resultSet, message);
+        if (result instanceof ResultSet) {
+            fillMessage((ResultSet) result, message);
+        } else {
+            message.setBody(result);
+        }
         try {
             getProcessor().process(exchange);
-            return 1; 
         } finally {
             if (exchange.getException() != null) {
                 getExceptionHandler().handleException("Error while processing exchange", exchange, exchange.getException());
             }
         }
+        return exchange.getException() == null;
+    }
+
+    private Object highestWatermark(List<Row> rows, Object highest) {
+        for (Row row : rows) {
+            highest = highestWatermark(row, highest);
+        }
+        return highest;
+    }
+
+    private Object highestWatermark(Row row, Object highest) {
+        if (watermarkStatement == null) {
+            return highest;
+        }
+        Object value = row.getObject(getEndpoint().getWatermarkColumn());
+        if (value == null) {
+            return highest;
+        }
+        if (highest == null || compareWatermarks(value, highest) > 0) {
+            return value;
+        }
+        return highest;
+    }
+
+    private static int compareWatermarks(Object value, Object other) {
+        if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            UUID otherUuid = (UUID) other;
+            int compare = Long.compare(uuid.timestamp(), otherUuid.timestamp());
+            return compare != 0 ? compare : uuid.compareTo(otherUuid);
+        }
+        return ((Date) value).compareTo((Date) other);
+    }
+
+    private static String encodeWatermark(Object watermark) {
+        if (watermark instanceof Date) {
+            return Long.toString(((Date) watermark).getTime());
+        }
+        return watermark.toString();
+    }
+
+    private static Object decodeWatermark(String offset, DataType type) throws CassandraException {
+        if (type.getName() == DataType.Name.TIMESTAMP) {
+            return new Date(Long.parseLong(offset));
+        }
+        if (type.getName() == DataType.Name.TIMEUUID) {
+            return UUID.fromString(offset);
+        }
+        throw new CassandraException("The watermark column must be a timestamp or a timeuuid column, but was " + type);
+    }
+
+    /**
+     * Adds the watermark clause to the polling query: as a further condition of its where
+     * clause, before its order by, per partition limit, limit and allow filtering clauses.
+     * 
+     * @param query
+     * @param column
+     */
+    static String appendWatermarkClause(String query, String column) {
+        String cql = query.trim();
+        if (cql.endsWith(";")) {
+            cql = cql.substring(0, cql.length() - 1).trim();
+        }
+        String suffix = "";
+        Matcher afterWhere = AFTER_WHERE.matcher(cql);
+        while (afterWhere.find()) {
+            if (!isQuoted(cql, afterWhere.start())) {
+                suffix = cql.substring(afterWhere.start());
+                cql = cql.substring(0, afterWhere.start());
+                break;
+            }
+        }
+        String clause = WHERE.matcher(cql).find() ? " AND " : " WHERE ";
+        return cql + clause + column + " > ?" + suffix;
+    }
+
+    /**
+     * Whether the index is inside a string literal, the quotes before it being unbalanced.
+     */
+    private static boolean isQuoted(String cql, int index) {
+        boolean quoted = false;
+        for (int i = 0; i < index; i++) {
+            if (cql.charAt(i) == '\'') {
+                quoted = !quoted;
+            }
+        }
+        return quoted;
     }
 
     /**
@@ -97,9 +387,4 @@ public class CassandraConsumer extends ScheduledPollConsumer {
     protected void fillMessage(ResultSet resultSet, Message message) {
         message.setBody(resultSet);
     }
-    
-    private String[] splitHost(String hostList){
-    	String[] hosts = StringUtils.split(hostList, ",");
-    	return hosts;
-    }
 }
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.TypeConverterLoaderException;
+import org.apache.camel.spi.TypeConverterLoader;
+import org.apache.camel.spi.TypeConverterRegistry;
+import org.apache.camel.support.SimpleTypeConverter;
+
+import com.datastax.driver.core.Row;
+
+/**
+ * Registers the {@link CassandraConverters} without scanning the classpath, being listed in
+ * META-INF/services/org/apache/camel/TypeConverterLoader.
+ */
+public final class CassandraConvertersLoader implements TypeConverterLoader {
+
+    @Override
+    public void load(TypeConverterRegistry registry) throws TypeConverterLoaderException {
+        registry.addTypeConverter(Map.class, Row.class, new SimpleTypeConverter(false, new SimpleTypeConverter.ConversionMethod() {
+
+            @Override
+            public Object doConvert(Class<?> type, Exchange exchange, Object value) throws Exception {
+                return CassandraConverters.toMap((Row) value);
+            }
+        }));
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+
+/**
+ * Accumulates the deltas of the counter operations of {@link CassandraProducer} per counter,
+ * and writes their sums in counter batches when the producer flushes them. The deltas are
+ * kept in striped adders, so that concurrent exchanges updating the same counter never block.
+ * A flush removes the counters it drains, so that only the counters updated since the last
+ * flush are kept.
+ */
+class CassandraCounterAccumulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CassandraCounterAccumulator.class);
+
+    private final CassandraProducer producer;
+    private final int maxStatements;
+    private final long flushThreshold;
+    private final ConcurrentHashMap<CounterKey, LongAdder> deltas = new ConcurrentHashMap<CounterKey, LongAdder>();
+    private final LongAdder pending = new LongAdder();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    CassandraCounterAccumulator(CassandraProducer producer, int maxStatements, long flushThreshold) {
+        this.producer = producer;
+        this.maxStatements = maxStatements;
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * Adds the delta to the counter, returning true when the deltas accumulated since the last
+     * flush reach the flush threshold and no flush has been requested since then: the caller
+     * then schedules one.
+     * 
+     * @param session
+     * @param table
+     * @param counterColumn
+     * @param whereColumn
+     * @param whereValue
+     * @param delta
+     */
+    boolean add(Session session, String table, String counterColumn, String whereColumn, Object whereValue, long delta) {
+        accumulate(new CounterKey(session, table, counterColumn, whereColumn, whereValue), delta);
+        pending.increment();
+        return pending.sum() >= flushThreshold && flushScheduled.compareAndSet(false, true);
+    }
+
+    private void accumulate(CounterKey key, long delta) {
+        while (true) {
+            LongAdder adder = deltas.get(key);
+            if (adder == null) {
+                LongAdder created = new LongAdder();
+                adder = deltas.putIfAbsent(key, created);
+                if (adder == null) {
+                    adder = created;
+                }
+            }
+            adder.add(delta);
+            if (deltas.get(key) == adder) {
+                return;
+            }
+            // a flush has removed the adder meanwhile, and may have drained it before the delta
+            // was added: what the adder still holds is moved to the adder of the counter now in the map
+            synchronized (adder) {
+                delta = adder.sum();
+                adder.add(-delta);
+            }
+            if (delta == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the sum of the deltas of every counter. The adder is removed from the map before
+     * its sum is drained, so that the exchanges adding a delta to it once drained see it removed
+     * and move the delta back to the map. The deltas of a failed batch are added back, unless
+     * the failure is a write timeout, after which the batch may have been applied.
+     */
+    synchronized void flush() {
+        flushScheduled.set(false);
+        pending.reset();
+        List<CounterKey> keys = new ArrayList<CounterKey>();
+        List<Long> sums = new ArrayList<Long>();
+        for (Map.Entry<CounterKey, LongAdder> entry : deltas.entrySet()) {
+            LongAdder adder = entry.getValue();
+            deltas.remove(entry.getKey(), adder);
+            long sum;
+            synchronized (adder) {
+                sum = adder.sum();
+                adder.add(-sum);
+            }
+            if (sum != 0) {
+                keys.add(entry.getKey());
+                sums.add(sum);
+            }
+        }
+        int from = 0;
+        while (from < keys.size()) {
+            Session session = keys.get(from).session;
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.COUNTER);
+            int to = from;
+            while (to < keys.size() && batch.size() < maxStatements && keys.get(to).session == session) {
+                CounterKey key = keys.get(to);
+                try {
+                    batch.add(createStatement(key, sums.get(to)));
+                } catch (Exception e) {
+                    // the statement was created when the delta was accepted, so the failure is transient
+                    LOG.warn("Error preparing the update of counter {}, its delta is kept for the next flush: {}", key, e.getMessage());
+                    accumulate(key, sums.get(to));
+                }
+                to++;
+            }
+            try {
+                if (batch.size() > 0) {
+                    execute(session, batch);
+                }
+            } catch (WriteTimeoutException e) {
+                LOG.warn("Timeout writing a batch of {} counters, the deltas are not retried: {}", batch.size(), e.getMessage());
+            } catch (Exception e) {
+                LOG.warn("Error writing a batch of {} counters, the deltas are kept for the next flush: {}", batch.size(), e.getMessage());
+                for (int i = from; i < to; i++) {
+                    accumulate(keys.get(i), sums.get(i));
+                }
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Creates the update of the counter by the sum of its deltas.
+     */
+    Statement createStatement(CounterKey key, long sum) throws Exception {
+        return producer.createCounterStatement(key.session, key.counterColumn, key.whereColumn, key.whereValue, sum);
+    }
+
+    /**
+     * Executes a batch of counter updates on the session of its counters, once the rate limit of
+     * the endpoint, if any, allows it: a batch rejected by the rate limit fails like any other.
+     */
+    void execute(Session session, BatchStatement batch) throws Exception {
+        CassandraRateLimiter rateLimiter = producer.getEndpoint().getRateLimiter();
+        if (rateLimiter != null) {
+            rateLimiter.acquire(null, session, batch);
+        }
+        session.execute(producer.applyConsistencyLevel(batch, producer.getEndpoint().getConsistencyLevel()));
+    }
+
+    static final class CounterKey {
+        private final Session session;
+        private final String table;
+        private final String counterColumn;
+        private final String whereColumn;
+        private final Object whereValue;
+
+        private CounterKey(Session session, String table, String counterColumn, String whereColumn, Object whereValue) {
+            this.session = session;
+            this.table = table;
+            this.counterColumn = counterColumn;
+            this.whereColumn = whereColumn;
+            this.whereValue = whereValue;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey other = (CounterKey) obj;
+            return session == other.session && table.equals(other.table) && counterColumn.equals(other.counterColumn)
+                    && whereColumn.equals(other.whereColumn) && whereValue.equals(other.whereValue);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(session);
+            hash = 31 * hash + table.hashCode();
+            hash = 31 * hash + counterColumn.hashCode();
+            hash = 31 * hash + whereColumn.hashCode();
+            return 31 * hash + whereValue.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return table + "." + counterColumn + " where " + whereColumn + " = " + whereValue;
+        }
+    }
+}
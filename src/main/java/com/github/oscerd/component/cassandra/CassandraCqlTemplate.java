@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+
+/**
+ * The statement of the cql option: a CQL template whose bind markers are named, :name, or
+ * Simple expressions, :#${expression}. The template is parsed once into the CQL to prepare,
+ * with positional markers, and the binding plan of its markers: per exchange, a named marker
+ * takes its value from the map of the parameters header, else from the Map body, and an
+ * expression marker from the evaluation of its expression. The literals, quoted identifiers
+ * and comments of the template are left as they are.
+ */
+class CassandraCqlTemplate {
+
+    private final String template;
+    private final String cql;
+    // the name of each marker, null for the expression markers
+    private final String[] names;
+    private final Expression[] expressions;
+
+    CassandraCqlTemplate(String template, CamelContext context) {
+        this.template = template;
+        List<String> markerNames = new ArrayList<String>();
+        List<Expression> markerExpressions = new ArrayList<Expression>();
+        StringBuilder sql = new StringBuilder(template.length());
+        int length = template.length();
+        int i = 0;
+        while (i < length) {
+            char c = template.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = template.indexOf(c, i + 1);
+                i = copy(template, sql, i, end < 0 ? length : end + 1);
+            } else if (template.startsWith("$$", i)) {
+                int end = template.indexOf("$$", i + 2);
+                i = copy(template, sql, i, end < 0 ? length : end + 2);
+            } else if (template.startsWith("--", i) || template.startsWith("//", i)) {
+                int end = template.indexOf('\n', i);
+                i = copy(template, sql, i, end < 0 ? length : end + 1);
+            } else if (template.startsWith("/*", i)) {
+                int end = template.indexOf("*/", i + 2);
+                i = copy(template, sql, i, end < 0 ? length : end + 2);
+            } else if (c == '?') {
+                throw new IllegalArgumentException("The cql option takes named markers, not positional ones. Value: " + template);
+            } else if (c == ':' && template.startsWith("#${", i + 1)) {
+                int end = closingBrace(template, i + 3);
+                markerNames.add(null);
+                markerExpressions.add(context.resolveLanguage("simple").createExpression(template.substring(i + 2, end + 1)));
+                sql.append('?');
+                i = end + 1;
+            } else if (c == ':' && i + 1 < length && isIdentifierStart(template.charAt(i + 1)) && (i == 0 || !isIdentifierPart(template.charAt(i - 1)))) {
+                int end = i + 2;
+                while (end < length && isIdentifierPart(template.charAt(end))) {
+                    end++;
+                }
+                markerNames.add(template.substring(i + 1, end));
+                markerExpressions.add(null);
+                sql.append('?');
+                i = end;
+            } else {
+                sql.append(c);
+                i++;
+            }
+        }
+        this.cql = sql.toString();
+        this.names = markerNames.toArray(new String[0]);
+        this.expressions = markerExpressions.toArray(new Expression[0]);
+    }
+
+    String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the CQL to prepare, the markers of the template replaced by positional markers.
+     */
+    String getCql() {
+        return cql;
+    }
+
+    /**
+     * Resolves the values of the markers for the exchange, in the order of the markers.
+     *
+     * @param exchange
+     * @throws CassandraException
+     */
+    Object[] values(Exchange exchange) throws CassandraException {
+        Map<?, ?> parameters = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_CQL_PARAMETERS, Map.class);
+        Object body = exchange.getIn().getBody();
+        Map<?, ?> bodyParameters = body instanceof Map ? (Map<?, ?>) body : null;
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < values.length; i++) {
+            if (expressions[i] != null) {
+                values[i] = expressions[i].evaluate(exchange, Object.class);
+            } else if (parameters != null && parameters.containsKey(names[i])) {
+                values[i] = parameters.get(names[i]);
+            } else if (bodyParameters != null && bodyParameters.containsKey(names[i])) {
+                values[i] = bodyParameters.get(names[i]);
+            } else {
+                throw new CassandraException("No value for the marker :" + names[i] + " of the cql option");
+            }
+        }
+        return values;
+    }
+
+    private static int copy(String template, StringBuilder sql, int start, int end) {
+        sql.append(template, start, end);
+        return end;
+    }
+
+    private static int closingBrace(String template, int open) {
+        int depth = 0;
+        for (int i = open; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated expression marker in the cql option. Value: " + template);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -16,23 +16,66 @@
  */
 package com.github.oscerd.component.cassandra;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.camel.Consumer;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
+import org.apache.camel.api.management.ManagedAttribute;
+import org.apache.camel.api.management.ManagedResource;
 import org.apache.camel.support.CamelContextHelper;
 import org.apache.camel.support.DefaultEndpoint;
 import org.apache.camel.util.ObjectHelper;
+import org.apache.camel.util.URISupport;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ClusterWidePercentileTracker;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.SchemaChangeListener;
+import com.datastax.driver.core.SchemaChangeListenerBase;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.DefaultRetryPolicy;
+import com.datastax.driver.core.policies.DowngradingConsistencyRetryPolicy;
+import com.datastax.driver.core.policies.ExponentialReconnectionPolicy;
+import com.datastax.driver.core.policies.FallthroughRetryPolicy;
+import com.datastax.driver.core.policies.LatencyAwarePolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.LoggingRetryPolicy;
+import com.datastax.driver.core.policies.NoSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.PercentileSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.RetryPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 
 /**
  * Represents a Cassandra endpoint. It is responsible for creating
  * {@link CassandraProducer} instances. It accepts a number of options to
  * customise the behaviour of consumers and producers.
  */
+@ManagedResource(description = "Managed Cassandra Endpoint")
 public class CassandraEndpoint extends DefaultEndpoint {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CassandraEndpoint.class);
+
 	private Cluster cassandraCluster;
+	private Session cassandraSession;
 	private String beanRef;
 	private String keyspace;
 	private String table;
@@ -40,13 +83,104 @@ public class CassandraEndpoint extends DefaultEndpoint {
 	private String host;
 	private String port;
 	private String pollingQuery;
+	private String cql;
 	private String username;
 	private String password;
 	private String format = "normalResultSet";
 	private String consistencyLevel;
+	private long reconnectionBaseDelay = 1000;
+	private long reconnectionMaxDelay = 60000;
+	private int connectTimeout = SocketOptions.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	private int readTimeout = SocketOptions.DEFAULT_READ_TIMEOUT_MILLIS;
+	private String speculativeExecution = "none";
+	private long speculativeDelay = 100;
+	private double speculativePercentile = 99.0;
+	private int speculativeMaxExecutions = 2;
+	private String retryPolicy = "default";
+	private boolean logRetries;
+	private boolean idempotent;
+	private String localDc;
+	private int usedHostsPerRemoteDc;
+	private boolean tokenAware = true;
+	private boolean shuffleReplicas = true;
+	private boolean latencyAware;
+	private double latencyExclusionThreshold = LatencyAwarePolicy.Builder.DEFAULT_EXCLUSION_THRESHOLD;
+	private int coreConnectionsPerHost = 1;
+	private int maxConnectionsPerHost = 1;
+	private int maxRequestsPerConnection = 1024;
+	private int poolTimeout = PoolingOptions.DEFAULT_POOL_TIMEOUT_MILLIS;
+	private int maxQueueSize = PoolingOptions.DEFAULT_MAX_QUEUE_SIZE;
+	private int heartbeatInterval = PoolingOptions.DEFAULT_HEARTBEAT_INTERVAL_SECONDS;
+	private int preparedStatementCacheSize = 100;
+	private boolean async;
+	private int asyncPoolSize = 10;
+	private ExecutorService asyncExecutorService;
+	private int maxInFlight;
+	private CassandraInFlightPolicy inFlightPolicy = CassandraInFlightPolicy.block;
+	private long maxInFlightWait = 1000;
+	private boolean adaptiveInFlight;
+	private int minInFlight = 1;
+	private long inFlightLatencyThreshold = 100;
+	private double inFlightBackoffRatio = 0.9;
+	private double rateLimit;
+	private double rateLimitBytes;
+	private String rateLimitKeyHeader;
+	private long rateLimitMaxWait = 1000;
+	private boolean batchWrites;
+	private int batchMaxStatements = 100;
+	private int batchMaxBytes = 5 * 1024;
+	private long batchFlushInterval = 10;
+	private BatchStatement.Type batchType = BatchStatement.Type.LOGGED;
+	private boolean coalesceCounters;
+	private long counterFlushInterval = 1000;
+	private long counterFlushThreshold = 10000;
+	private boolean metrics;
+	private int fetchSize;
+	private int maxRows;
+	private CassandraSplitMode splitMode = CassandraSplitMode.all;
+	private String watermarkColumn;
+	private String offsetStore = "memory";
+	private IOffsetStore offsetStoreInstance;
+	private final IOffsetStore memoryOffsetStore = OffsetStores.memory();
+	private String offsetStoreFile;
+	private String offsetTable = OffsetStores.DEFAULT_OFFSET_TABLE;
+	private String offsetKey;
+	private boolean scan;
+	private int scanSplits = 16;
+	private int scanThreads = 4;
 	
 	protected boolean isExternalCluster = false;
 	
+	// sessions opened from the contact points carried by the exchange headers, kept until the endpoint stops
+	private final Map<String, Session> contactPointsSessions = new ConcurrentHashMap<String, Session>();
+	
+	private CassandraStatementCache statementCache;
+	private CassandraMetrics cassandraMetrics;
+	private CassandraInFlightLimiter inFlightLimiter;
+	private CassandraRateLimiter rateLimiter;
+	private final SchemaChangeListener statementCacheInvalidator = new SchemaChangeListenerBase() {
+
+		@Override
+		public void onTableChanged(TableMetadata current, TableMetadata previous) {
+			invalidateStatements(current);
+		}
+
+		@Override
+		public void onTableRemoved(TableMetadata table) {
+			invalidateStatements(table);
+		}
+
+		@Override
+		public void onKeyspaceRemoved(KeyspaceMetadata removed) {
+			if (removed.getName().equalsIgnoreCase(keyspace)) {
+				LOG.debug("Keyspace {} removed, invalidating the prepared statements", keyspace);
+				statementCache.invalidateAll();
+			} else {
+				statementCache.invalidate(null);
+			}
+		}
+	};
+	
 	private IResultSetFormatStrategy resultSetFormatStrategy;
 
 	public CassandraEndpoint() {
@@ -70,14 +204,16 @@ public class CassandraEndpoint extends DefaultEndpoint {
 
 	@Override
 	public boolean isSingleton() {
-		// TODO Auto-generated method stub
-		return false;
+		return true;
 	}
 	
     @Override
     protected void doStart() throws Exception {
         super.doStart();
+        // invalid options must fail before the cluster is built and connected
+        validateEndpoint();
 
+        statementCache = new CassandraStatementCache(preparedStatementCacheSize);
         if (cassandraCluster == null && beanRef != null) {
             Object bean = CamelContextHelper.mandatoryLookup(getCamelContext(), beanRef);
         	if (bean instanceof Cluster) {
@@ -86,15 +222,254 @@ public class CassandraEndpoint extends DefaultEndpoint {
             } else {
                 throw new IllegalArgumentException("CQL Bean type should be of type Cluster but was " + bean);    			
             }
+        } else if (cassandraCluster != null) {
+            isExternalCluster = true;
+        } else if (!ObjectHelper.isEmpty(host)) {
+            Cluster.Builder builder = createClusterBuilder().addContactPoints(StringUtils.split(host, ","));
+            if (!ObjectHelper.isEmpty(port)) {
+                builder.withPort(Integer.parseInt(port));
+            }
+            cassandraCluster = builder.build();
+            isExternalCluster = false;
+        }
+        if (cassandraCluster != null) {
+            cassandraCluster.register(statementCacheInvalidator);
+            try {
+                cassandraSession = cassandraCluster.connect(keyspace);
+            } catch (RuntimeException e) {
+                cassandraCluster.unregister(statementCacheInvalidator);
+                if (!isExternalCluster) {
+                    cassandraCluster.close();
+                    cassandraCluster = null;
+                }
+                throw e;
+            }
+        }
+        if (maxInFlight > 0) {
+            inFlightLimiter = new CassandraInFlightLimiter(minInFlight, maxInFlight, inFlightPolicy, maxInFlightWait,
+                    adaptiveInFlight, inFlightLatencyThreshold, inFlightBackoffRatio);
+        }
+        if (rateLimit > 0 || rateLimitBytes > 0) {
+            rateLimiter = new CassandraRateLimiter(rateLimit, rateLimitBytes, rateLimitMaxWait);
+        }
+        if (metrics) {
+            cassandraMetrics = new CassandraMetrics(URISupport.sanitizeUri(getEndpointUri()));
+            cassandraMetrics.start(cassandraSession, statementCache);
+            if (inFlightLimiter != null) {
+                cassandraMetrics.register(inFlightLimiter);
+            }
+            if (rateLimiter != null) {
+                cassandraMetrics.register(rateLimiter);
+            }
         }
     }
 
     @Override
     protected void doStop() throws Exception {
-        if (isExternalCluster) cassandraCluster.close();
+        if (cassandraMetrics != null) {
+            cassandraMetrics.stop();
+            cassandraMetrics = null;
+        }
+        inFlightLimiter = null;
+        rateLimiter = null;
+        if (cassandraSession != null) {
+            cassandraSession.close();
+            cassandraSession = null;
+        }
+        for (Session session : contactPointsSessions.values()) {
+            session.getCluster().close();
+        }
+        contactPointsSessions.clear();
+        if (cassandraCluster != null) {
+            cassandraCluster.unregister(statementCacheInvalidator);
+            if (!isExternalCluster) {
+                cassandraCluster.close();
+                cassandraCluster = null;
+            }
+        }
+        statementCache.invalidateAll();
         super.doStop();
     }
 
+    /**
+     * Returns the session opened when the endpoint started, or null when neither a
+     * host nor a cluster bean has been configured.
+     */
+    public Session getCassandraSession() {
+        return cassandraSession;
+    }
+
+    /**
+     * Returns the metrics of the endpoint, or null when they are not enabled.
+     */
+    public CassandraMetrics getCassandraMetrics() {
+        return cassandraMetrics;
+    }
+
+    /**
+     * Returns the memory offset store of the endpoint, kept for the lifetime of the endpoint.
+     */
+    IOffsetStore getMemoryOffsetStore() {
+        return memoryOffsetStore;
+    }
+
+    /**
+     * Returns the limiter of the requests in flight of the endpoint, or null when maxInFlight is not set.
+     */
+    CassandraInFlightLimiter getInFlightLimiter() {
+        return inFlightLimiter;
+    }
+
+    /**
+     * Returns the rate limiter of the requests of the endpoint, or null when neither rateLimit nor
+     * rateLimitBytes is set.
+     */
+    CassandraRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns a session connected to the given contact points. The first call for a
+     * contact points/port pair builds the cluster, next calls reuse it until the
+     * endpoint is stopped.
+     * 
+     * @param contactPoints
+     * @param contactPort
+     * @throws UnknownHostException 
+     */
+    public Session getCassandraSession(List<String> contactPoints, String contactPort) throws UnknownHostException {
+        String key = contactPoints + ":" + contactPort;
+        Session session = contactPointsSessions.get(key);
+        if (session == null) {
+            synchronized (contactPointsSessions) {
+                session = contactPointsSessions.get(key);
+                if (session == null) {
+                    LOG.debug("Opening session to contact points {} on port {}", contactPoints, contactPort);
+                    Cluster.Builder builder = createClusterBuilder().addContactPoints(getInetAddress(contactPoints));
+                    if (contactPort != null) {
+                        builder.withPort(Integer.parseInt(contactPort));
+                    }
+                    Cluster cluster = builder.build();
+                    cluster.register(statementCacheInvalidator);
+                    try {
+                        session = cluster.connect(keyspace);
+                    } catch (RuntimeException e) {
+                        cluster.close();
+                        throw e;
+                    }
+                    contactPointsSessions.put(key, session);
+                }
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Creates the builder of the cluster the endpoint connects when it starts, also used for
+     * the cluster of each CASSANDRA_CONTACT_POINTS list: credentials, socket options, pooling
+     * options and the reconnection, load balancing, retry and speculative execution policies.
+     * The options have been validated when the endpoint started.
+     */
+    protected Cluster.Builder createClusterBuilder() {
+        Cluster.Builder builder = Cluster.builder()
+                .withReconnectionPolicy(new ExponentialReconnectionPolicy(reconnectionBaseDelay, reconnectionMaxDelay))
+                .withSocketOptions(new SocketOptions().setConnectTimeoutMillis(connectTimeout).setReadTimeoutMillis(readTimeout))
+                .withSpeculativeExecutionPolicy(createSpeculativeExecutionPolicy())
+                .withRetryPolicy(createRetryPolicy())
+                .withLoadBalancingPolicy(createLoadBalancingPolicy())
+                .withPoolingOptions(new PoolingOptions()
+                        .setConnectionsPerHost(HostDistance.LOCAL, coreConnectionsPerHost, maxConnectionsPerHost)
+                        .setMaxRequestsPerConnection(HostDistance.LOCAL, maxRequestsPerConnection)
+                        .setPoolTimeoutMillis(poolTimeout)
+                        .setMaxQueueSize(maxQueueSize)
+                        .setHeartbeatIntervalSeconds(heartbeatInterval));
+        if (!ObjectHelper.isEmpty(username) && !ObjectHelper.isEmpty(password)) {
+        	builder.withCredentials(username, password);
+        }
+        return builder;
+    }
+
+    /**
+     * Creates the speculative execution policy of a cluster: the driver only speculates on the
+     * statements marked as idempotent. The percentile policy tracks the latencies of the whole
+     * cluster, up to the read timeout.
+     */
+    private SpeculativeExecutionPolicy createSpeculativeExecutionPolicy() {
+        switch (speculativeExecution) {
+        case "none":
+            return NoSpeculativeExecutionPolicy.INSTANCE;
+        case "constant":
+            return new ConstantSpeculativeExecutionPolicy(speculativeDelay, speculativeMaxExecutions);
+        case "percentile":
+            return new PercentileSpeculativeExecutionPolicy(ClusterWidePercentileTracker.builder(readTimeout).build(),
+                    speculativePercentile, speculativeMaxExecutions);
+        default:
+            throw new IllegalArgumentException("Speculative execution not supported. Value: " + speculativeExecution);
+        }
+    }
+
+    /**
+     * Creates the load balancing policy of a cluster: round robin on the hosts of the local
+     * datacenter, the first one contacted unless localDc is set, falling back on usedHostsPerRemoteDc
+     * hosts of each remote one, optionally excluding the hosts slower than the fastest one by
+     * latencyExclusionThreshold times, and trying the replicas of the statement routing key first.
+     */
+    @SuppressWarnings("deprecation")
+    private LoadBalancingPolicy createLoadBalancingPolicy() {
+        DCAwareRoundRobinPolicy.Builder dcAware = DCAwareRoundRobinPolicy.builder().withUsedHostsPerRemoteDc(usedHostsPerRemoteDc);
+        if (!ObjectHelper.isEmpty(localDc)) {
+            dcAware.withLocalDc(localDc);
+        }
+        LoadBalancingPolicy policy = dcAware.build();
+        if (latencyAware) {
+            policy = LatencyAwarePolicy.builder(policy).withExclusionThreshold(latencyExclusionThreshold).build();
+        }
+        if (tokenAware) {
+            policy = new TokenAwarePolicy(policy, shuffleReplicas ? TokenAwarePolicy.ReplicaOrdering.RANDOM : TokenAwarePolicy.ReplicaOrdering.TOPOLOGICAL);
+        }
+        return policy;
+    }
+
+    @SuppressWarnings("deprecation")
+    private RetryPolicy createRetryPolicy() {
+        RetryPolicy policy;
+        switch (retryPolicy) {
+        case "default":
+            policy = DefaultRetryPolicy.INSTANCE;
+            break;
+        case "downgradingConsistency":
+            policy = DowngradingConsistencyRetryPolicy.INSTANCE;
+            break;
+        case "fallthrough":
+            policy = FallthroughRetryPolicy.INSTANCE;
+            break;
+        default:
+            throw new IllegalArgumentException("Retry policy not supported. Value: " + retryPolicy);
+        }
+        return logRetries ? new LoggingRetryPolicy(policy) : policy;
+    }
+
+    /**
+     * Invalidates the statements of the table changed, and the ones of plain CQL, which may
+     * work on any table of any keyspace.
+     */
+    private void invalidateStatements(TableMetadata table) {
+        if (table.getKeyspace().getName().equalsIgnoreCase(keyspace)) {
+            LOG.debug("Schema of table {} changed, invalidating its prepared statements", table.getName());
+            statementCache.invalidate(table.getName());
+        } else {
+            statementCache.invalidate(null);
+        }
+    }
+
+    private Collection<InetAddress> getInetAddress(List<String> addr) throws UnknownHostException {
+        Collection<InetAddress> coll = new HashSet<InetAddress>();
+        for (String address : addr) {
+            coll.add(InetAddress.getByName(address));
+        }
+        return coll;
+    }
+
 	public Cluster getCassandraCluster() {
 		return cassandraCluster;
 	}
@@ -143,6 +518,19 @@ public class CassandraEndpoint extends DefaultEndpoint {
 		this.pollingQuery = pollingQuery;
 	}
 
+	public String getCql() {
+		return cql;
+	}
+
+	/**
+	 * The CQL statement executed by the producer for every exchange, instead of an operation or a plain query,
+	 * with named markers (:name) bound from the CamelCassandraCqlParameters header map or the Map body, or
+	 * Simple expression markers (:#${expression}). It is prepared once and the markers are resolved once.
+	 */
+	public void setCql(String cql) {
+		this.cql = cql;
+	}
+
 	public CassandraOperations getOperation() {
 		return operation;
 	}
@@ -195,6 +583,685 @@ public class CassandraEndpoint extends DefaultEndpoint {
 		this.consistencyLevel = consistencyLevel;
 	}
 
+	public long getReconnectionBaseDelay() {
+		return reconnectionBaseDelay;
+	}
+
+	public void setReconnectionBaseDelay(long reconnectionBaseDelay) {
+		this.reconnectionBaseDelay = reconnectionBaseDelay;
+	}
+
+	public long getReconnectionMaxDelay() {
+		return reconnectionMaxDelay;
+	}
+
+	public void setReconnectionMaxDelay(long reconnectionMaxDelay) {
+		this.reconnectionMaxDelay = reconnectionMaxDelay;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * The timeout in milliseconds of the connections to the hosts.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * The time in milliseconds the driver waits for the response of a host before the retry policy decides
+	 * whether to try the next one.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public String getSpeculativeExecution() {
+		return speculativeExecution;
+	}
+
+	/**
+	 * Whether the driver sends an idempotent statement to another host when the first one does not answer
+	 * in time: none, after a constant delay (constant) or after the given percentile of the latencies of the
+	 * cluster (percentile).
+	 */
+	public void setSpeculativeExecution(String speculativeExecution) {
+		this.speculativeExecution = speculativeExecution;
+	}
+
+	public long getSpeculativeDelay() {
+		return speculativeDelay;
+	}
+
+	/**
+	 * The delay in milliseconds between the executions of the constant speculative execution.
+	 */
+	public void setSpeculativeDelay(long speculativeDelay) {
+		this.speculativeDelay = speculativeDelay;
+	}
+
+	public double getSpeculativePercentile() {
+		return speculativePercentile;
+	}
+
+	/**
+	 * The percentile of the latencies after which the percentile speculative execution starts the next execution.
+	 */
+	public void setSpeculativePercentile(double speculativePercentile) {
+		this.speculativePercentile = speculativePercentile;
+	}
+
+	public int getSpeculativeMaxExecutions() {
+		return speculativeMaxExecutions;
+	}
+
+	/**
+	 * The maximum number of speculative executions of a statement, besides the first one.
+	 */
+	public void setSpeculativeMaxExecutions(int speculativeMaxExecutions) {
+		this.speculativeMaxExecutions = speculativeMaxExecutions;
+	}
+
+	public String getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * The retry policy of the driver: default, downgradingConsistency, which retries at a lower consistency level
+	 * when not enough replicas are alive, or fallthrough, which never retries.
+	 */
+	public void setRetryPolicy(String retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public boolean isLogRetries() {
+		return logRetries;
+	}
+
+	/**
+	 * Whether the decisions of the retry policy to retry or ignore an error are logged.
+	 */
+	public void setLogRetries(boolean logRetries) {
+		this.logRetries = logRetries;
+	}
+
+	public String getLocalDc() {
+		return localDc;
+	}
+
+	/**
+	 * The datacenter whose hosts the requests are sent to, the one of the first host contacted when not set.
+	 */
+	public void setLocalDc(String localDc) {
+		this.localDc = localDc;
+	}
+
+	public int getUsedHostsPerRemoteDc() {
+		return usedHostsPerRemoteDc;
+	}
+
+	/**
+	 * The number of hosts of each remote datacenter the requests fall back on when no host of the local one
+	 * is available, none by default so that requests never cross datacenters.
+	 */
+	public void setUsedHostsPerRemoteDc(int usedHostsPerRemoteDc) {
+		this.usedHostsPerRemoteDc = usedHostsPerRemoteDc;
+	}
+
+	public boolean isTokenAware() {
+		return tokenAware;
+	}
+
+	/**
+	 * Whether the requests are sent to a replica of the partition of their statement first.
+	 */
+	public void setTokenAware(boolean tokenAware) {
+		this.tokenAware = tokenAware;
+	}
+
+	public boolean isShuffleReplicas() {
+		return shuffleReplicas;
+	}
+
+	/**
+	 * Whether the token aware policy spreads the requests on the replicas of a partition in random order,
+	 * instead of always trying them in the order of the ring.
+	 */
+	public void setShuffleReplicas(boolean shuffleReplicas) {
+		this.shuffleReplicas = shuffleReplicas;
+	}
+
+	public boolean isLatencyAware() {
+		return latencyAware;
+	}
+
+	/**
+	 * Whether the hosts whose average latency is over latencyExclusionThreshold times the one of the fastest host
+	 * are tried last.
+	 */
+	public void setLatencyAware(boolean latencyAware) {
+		this.latencyAware = latencyAware;
+	}
+
+	public double getLatencyExclusionThreshold() {
+		return latencyExclusionThreshold;
+	}
+
+	/**
+	 * How many times slower than the fastest host a host must be for the latency aware policy to exclude it.
+	 */
+	public void setLatencyExclusionThreshold(double latencyExclusionThreshold) {
+		this.latencyExclusionThreshold = latencyExclusionThreshold;
+	}
+
+	public int getCoreConnectionsPerHost() {
+		return coreConnectionsPerHost;
+	}
+
+	/**
+	 * The number of connections kept open to each host of the local datacenter.
+	 */
+	public void setCoreConnectionsPerHost(int coreConnectionsPerHost) {
+		this.coreConnectionsPerHost = coreConnectionsPerHost;
+	}
+
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * The maximum number of connections to each host of the local datacenter, opened when the requests in
+	 * flight on the open ones get close to their limit.
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	public int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	/**
+	 * The maximum number of requests in flight on a connection to a host of the local datacenter.
+	 */
+	public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	public int getPoolTimeout() {
+		return poolTimeout;
+	}
+
+	/**
+	 * The time in milliseconds a request waits for a connection of a saturated pool, before trying the next host.
+	 */
+	public void setPoolTimeout(int poolTimeout) {
+		this.poolTimeout = poolTimeout;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * The maximum number of requests waiting for a connection of a saturated pool, the next ones trying the
+	 * next host at once.
+	 */
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	public int getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	/**
+	 * The interval in seconds after which an idle connection sends a heartbeat, 0 to disable heartbeats.
+	 */
+	public void setHeartbeatInterval(int heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
+	/**
+	 * Whether the plain queries and the cql statement are idempotent, so that the driver may retry them and execute
+	 * them speculatively. The statements of the operations are marked idempotent unless they update counters.
+	 */
+	public void setIdempotent(boolean idempotent) {
+		this.idempotent = idempotent;
+	}
+
+	public int getPreparedStatementCacheSize() {
+		return preparedStatementCacheSize;
+	}
+
+	public void setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+		this.preparedStatementCacheSize = preparedStatementCacheSize;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Whether the producer executes the statements asynchronously, completing the exchange
+	 * on the asynchronous executor service when the result is available.
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	public int getAsyncPoolSize() {
+		return asyncPoolSize;
+	}
+
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
+	public ExecutorService getAsyncExecutorService() {
+		return asyncExecutorService;
+	}
+
+	/**
+	 * The executor service completing the asynchronous exchanges, instead of a thread pool
+	 * of asyncPoolSize threads created by the producer.
+	 */
+	public void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+		this.asyncExecutorService = asyncExecutorService;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * The maximum number of requests the producers of the endpoint have in flight, 0 for no limit.
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	public CassandraInFlightPolicy getInFlightPolicy() {
+		return inFlightPolicy;
+	}
+
+	/**
+	 * What the producer does with an exchange when maxInFlight requests are in flight: block until
+	 * one completes, failFast or wait up to maxInFlightWait milliseconds.
+	 */
+	public void setInFlightPolicy(CassandraInFlightPolicy inFlightPolicy) {
+		this.inFlightPolicy = inFlightPolicy;
+	}
+
+	public long getMaxInFlightWait() {
+		return maxInFlightWait;
+	}
+
+	/**
+	 * The milliseconds an exchange waits for a request in flight to complete with the wait policy.
+	 */
+	public void setMaxInFlightWait(long maxInFlightWait) {
+		this.maxInFlightWait = maxInFlightWait;
+	}
+
+	public boolean isAdaptiveInFlight() {
+		return adaptiveInFlight;
+	}
+
+	/**
+	 * Whether the limit of the requests in flight adapts between minInFlight and maxInFlight to the
+	 * round trip time of the exchanges.
+	 */
+	public void setAdaptiveInFlight(boolean adaptiveInFlight) {
+		this.adaptiveInFlight = adaptiveInFlight;
+	}
+
+	public int getMinInFlight() {
+		return minInFlight;
+	}
+
+	/**
+	 * The limit of the requests in flight an adaptive limit starts from and never goes under.
+	 */
+	public void setMinInFlight(int minInFlight) {
+		this.minInFlight = minInFlight;
+	}
+
+	public long getInFlightLatencyThreshold() {
+		return inFlightLatencyThreshold;
+	}
+
+	/**
+	 * The round trip time in milliseconds over which a request decreases an adaptive limit, under
+	 * which it increases it.
+	 */
+	public void setInFlightLatencyThreshold(long inFlightLatencyThreshold) {
+		this.inFlightLatencyThreshold = inFlightLatencyThreshold;
+	}
+
+	public double getInFlightBackoffRatio() {
+		return inFlightBackoffRatio;
+	}
+
+	/**
+	 * The ratio an adaptive limit is multiplied by when a request is slow or the cluster overloaded.
+	 */
+	public void setInFlightBackoffRatio(double inFlightBackoffRatio) {
+		this.inFlightBackoffRatio = inFlightBackoffRatio;
+	}
+
+	public double getRateLimit() {
+		return rateLimit;
+	}
+
+	/**
+	 * The maximum number of requests per second of the producers and consumers of the endpoint, 0 for no limit.
+	 */
+	public void setRateLimit(double rateLimit) {
+		this.rateLimit = rateLimit;
+	}
+
+	public double getRateLimitBytes() {
+		return rateLimitBytes;
+	}
+
+	/**
+	 * The maximum number of bytes of requests per second of the producers and consumers of the endpoint, 0 for no limit.
+	 */
+	public void setRateLimitBytes(double rateLimitBytes) {
+		this.rateLimitBytes = rateLimitBytes;
+	}
+
+	public String getRateLimitKeyHeader() {
+		return rateLimitKeyHeader;
+	}
+
+	/**
+	 * The header whose value, such as a tenant id, gets its own rate limits. The exchanges without it and
+	 * the polls of the consumers share the rate limits of the endpoint.
+	 */
+	public void setRateLimitKeyHeader(String rateLimitKeyHeader) {
+		this.rateLimitKeyHeader = rateLimitKeyHeader;
+	}
+
+	public long getRateLimitMaxWait() {
+		return rateLimitMaxWait;
+	}
+
+	/**
+	 * The maximum milliseconds a request waits for the rate limit, the requests that would wait longer failing at once.
+	 */
+	public void setRateLimitMaxWait(long rateLimitMaxWait) {
+		this.rateLimitMaxWait = rateLimitMaxWait;
+	}
+
+	public boolean isBatchWrites() {
+		return batchWrites;
+	}
+
+	/**
+	 * Whether the producer buffers the insert and update statements of different exchanges
+	 * and executes them in unlogged batches grouped by partition key.
+	 */
+	public void setBatchWrites(boolean batchWrites) {
+		this.batchWrites = batchWrites;
+	}
+
+	public int getBatchMaxStatements() {
+		return batchMaxStatements;
+	}
+
+	/**
+	 * The number of statements that flushes a batch.
+	 */
+	public void setBatchMaxStatements(int batchMaxStatements) {
+		this.batchMaxStatements = batchMaxStatements;
+	}
+
+	public int getBatchMaxBytes() {
+		return batchMaxBytes;
+	}
+
+	/**
+	 * The size in bytes that flushes a batch, to stay under the batch size warning
+	 * threshold of the cluster.
+	 */
+	public void setBatchMaxBytes(int batchMaxBytes) {
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	public long getBatchFlushInterval() {
+		return batchFlushInterval;
+	}
+
+	/**
+	 * The interval in milliseconds at which the buffered batches are flushed, whatever their size.
+	 */
+	public void setBatchFlushInterval(long batchFlushInterval) {
+		this.batchFlushInterval = batchFlushInterval;
+	}
+
+	public BatchStatement.Type getBatchType() {
+		return batchType;
+	}
+
+	/**
+	 * The type of the batches of the batch operation: LOGGED, UNLOGGED or COUNTER. A logged
+	 * batch, the default, is executed as it is and atomically, the other ones are split by partition key.
+	 */
+	public void setBatchType(BatchStatement.Type batchType) {
+		this.batchType = batchType;
+	}
+
+	public boolean isCoalesceCounters() {
+		return coalesceCounters;
+	}
+
+	/**
+	 * Whether the producer sums the deltas of the counter operations per counter and writes
+	 * the sums periodically, completing the counter exchanges at once.
+	 */
+	public void setCoalesceCounters(boolean coalesceCounters) {
+		this.coalesceCounters = coalesceCounters;
+	}
+
+	public long getCounterFlushInterval() {
+		return counterFlushInterval;
+	}
+
+	/**
+	 * The interval in milliseconds at which the coalesced counters are written.
+	 */
+	public void setCounterFlushInterval(long counterFlushInterval) {
+		this.counterFlushInterval = counterFlushInterval;
+	}
+
+	public long getCounterFlushThreshold() {
+		return counterFlushThreshold;
+	}
+
+	/**
+	 * The number of counter operations coalesced since the last flush that triggers a flush.
+	 */
+	public void setCounterFlushThreshold(long counterFlushThreshold) {
+		this.counterFlushThreshold = counterFlushThreshold;
+	}
+
+	public boolean isMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Whether the endpoint records the latency, rows, errors and requests in flight of its operations,
+	 * along with the metrics of the driver, and registers them in JMX.
+	 */
+	public void setMetrics(boolean metrics) {
+		this.metrics = metrics;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * The number of rows fetched per page by the polling query and the producer statements, the driver default when not set.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	/**
+	 * The maximum number of rows the rowsList, iterator, iterable, stream, bean, columnar and mapList formats read, unlimited when not set.
+	 */
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	public CassandraSplitMode getSplitMode() {
+		return splitMode;
+	}
+
+	/**
+	 * Whether the consumer sends the whole result set (all), each page (page) or each row (row)
+	 * of the polling query as an exchange.
+	 */
+	public void setSplitMode(CassandraSplitMode splitMode) {
+		this.splitMode = splitMode;
+	}
+
+	public String getWatermarkColumn() {
+		return watermarkColumn;
+	}
+
+	/**
+	 * The timestamp or timeuuid column whose highest value seen by the consumer is stored
+	 * after each successful poll, so that the next poll only reads the rows after it.
+	 */
+	public void setWatermarkColumn(String watermarkColumn) {
+		this.watermarkColumn = watermarkColumn;
+	}
+
+	public String getOffsetStore() {
+		return offsetStore;
+	}
+
+	/**
+	 * The store of the consumer offsets: memory, file or cassandra.
+	 */
+	public void setOffsetStore(String offsetStore) {
+		this.offsetStore = offsetStore;
+	}
+
+	public IOffsetStore getOffsetStoreInstance() {
+		return offsetStoreInstance;
+	}
+
+	/**
+	 * A custom offset store, used instead of the one named by offsetStore.
+	 */
+	public void setOffsetStoreInstance(IOffsetStore offsetStoreInstance) {
+		this.offsetStoreInstance = offsetStoreInstance;
+	}
+
+	public String getOffsetStoreFile() {
+		return offsetStoreFile;
+	}
+
+	public void setOffsetStoreFile(String offsetStoreFile) {
+		this.offsetStoreFile = offsetStoreFile;
+	}
+
+	public String getOffsetTable() {
+		return offsetTable;
+	}
+
+	public void setOffsetTable(String offsetTable) {
+		this.offsetTable = offsetTable;
+	}
+
+	public String getOffsetKey() {
+		return offsetKey;
+	}
+
+	/**
+	 * The key of the consumer offsets in the store, by default made of the keyspace and the polling query.
+	 */
+	public void setOffsetKey(String offsetKey) {
+		this.offsetKey = offsetKey;
+	}
+
+	public boolean isScan() {
+		return scan;
+	}
+
+	/**
+	 * Whether the consumer scans the whole table in parallel token ranges, instead of
+	 * running the polling query.
+	 */
+	public void setScan(boolean scan) {
+		this.scan = scan;
+	}
+
+	public int getScanSplits() {
+		return scanSplits;
+	}
+
+	/**
+	 * The number of token ranges the ring is split in for a scan.
+	 */
+	public void setScanSplits(int scanSplits) {
+		this.scanSplits = scanSplits;
+	}
+
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	/**
+	 * The number of token ranges scanned at the same time.
+	 */
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	public CassandraStatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	@ManagedAttribute(description = "Number of prepared statements in the cache")
+	public int getPreparedStatementCacheCurrentSize() {
+		return statementCache != null ? statementCache.getSize() : 0;
+	}
+
+	@ManagedAttribute(description = "Number of prepared statement cache hits")
+	public long getPreparedStatementCacheHits() {
+		return statementCache != null ? statementCache.getHits() : 0;
+	}
+
+	@ManagedAttribute(description = "Number of prepared statement cache misses")
+	public long getPreparedStatementCacheMisses() {
+		return statementCache != null ? statementCache.getMisses() : 0;
+	}
+
+	@ManagedAttribute(description = "Number of prepared statements evicted from the cache")
+	public long getPreparedStatementCacheEvictions() {
+		return statementCache != null ? statementCache.getEvictions() : 0;
+	}
+
 	protected boolean isExternalCluster() {
 		return isExternalCluster;
 	}
@@ -207,7 +1274,59 @@ public class CassandraEndpoint extends DefaultEndpoint {
 		this.resultSetFormatStrategy = resultSetFormatStrategy;
 	}
 
+    /**
+     * Creates the strategy of the format option, the class of a bean format being resolved
+     * with the class resolver of the context.
+     * 
+     * @throws IllegalArgumentException when the format refers to a class not found
+     */
+    void defineFormatStrategy() {
+        if (!ObjectHelper.isEmpty(format)) {
+            resultSetFormatStrategy = ResultSetFormatStrategies.fromName(format, maxRows,
+                    getCamelContext() != null ? getCamelContext().getClassResolver() : null);
+        }
+    }
+
+	private void validateCluster() throws IllegalArgumentException {
+		if (connectTimeout <= 0 || readTimeout <= 0) {
+			throw new IllegalArgumentException("The parameters connectTimeout and readTimeout must be greater than zero");
+		}
+		if (speculativeDelay < 0 || speculativeMaxExecutions <= 0 || speculativePercentile <= 0 || speculativePercentile >= 100) {
+			throw new IllegalArgumentException("The parameters speculativeDelay, speculativeMaxExecutions and speculativePercentile are out of range");
+		}
+		if (usedHostsPerRemoteDc < 0 || latencyExclusionThreshold < 1) {
+			throw new IllegalArgumentException("The parameter usedHostsPerRemoteDc must not be negative and latencyExclusionThreshold must be at least 1");
+		}
+		if (coreConnectionsPerHost <= 0 || maxConnectionsPerHost < coreConnectionsPerHost || maxRequestsPerConnection <= 0) {
+			throw new IllegalArgumentException("The parameters coreConnectionsPerHost and maxRequestsPerConnection must be greater than zero, maxConnectionsPerHost at least coreConnectionsPerHost");
+		}
+		if (poolTimeout < 0 || maxQueueSize < 0 || heartbeatInterval < 0) {
+			throw new IllegalArgumentException("The parameters poolTimeout, maxQueueSize and heartbeatInterval must not be negative");
+		}
+		createSpeculativeExecutionPolicy();
+		createRetryPolicy();
+	}
+
+	private void validateEndpoint() throws IllegalArgumentException {
+		validateCluster();
+		validateRateLimit();
+		if (maxInFlight < 0 || (maxInFlight > 0 && inFlightPolicy == CassandraInFlightPolicy.wait && maxInFlightWait <= 0)) {
+			throw new IllegalArgumentException("The parameter maxInFlight must not be negative, maxInFlightWait greater than zero with the wait policy");
+		}
+		if (adaptiveInFlight && (maxInFlight <= 0 || minInFlight <= 0 || minInFlight > maxInFlight || inFlightLatencyThreshold <= 0
+				|| inFlightBackoffRatio <= 0 || inFlightBackoffRatio >= 1)) {
+			throw new IllegalArgumentException("The parameter adaptiveInFlight requires minInFlight between 1 and maxInFlight, inFlightLatencyThreshold greater than zero and inFlightBackoffRatio between 0 and 1");
+		}
+	}
+
 	private void validateProducer() throws IllegalArgumentException {
+		validateEndpoint();
+		if (batchMaxStatements <= 0 || batchMaxBytes <= 0 || batchFlushInterval <= 0) {
+			throw new IllegalArgumentException("The parameters batchMaxStatements, batchMaxBytes and batchFlushInterval must be greater than zero");
+		}
+		if (coalesceCounters && (counterFlushInterval <= 0 || counterFlushThreshold <= 0)) {
+			throw new IllegalArgumentException("The parameters counterFlushInterval and counterFlushThreshold must be greater than zero");
+		}
 		if (ObjectHelper.isEmpty(keyspace)) {
 			throw new IllegalArgumentException("The parameter keyspace must be specified");
 		} else {
@@ -225,7 +1344,23 @@ public class CassandraEndpoint extends DefaultEndpoint {
 		}
 	}
 	
+	private void validateRateLimit() throws IllegalArgumentException {
+		if (rateLimit < 0 || rateLimitBytes < 0 || rateLimitMaxWait < 0) {
+			throw new IllegalArgumentException("The parameters rateLimit, rateLimitBytes and rateLimitMaxWait must not be negative");
+		}
+	}
+	
 	private void validateConsumer() throws IllegalArgumentException {
+		validateEndpoint();
+		if (scan) {
+			if (ObjectHelper.isEmpty(host) || ObjectHelper.isEmpty(keyspace) || ObjectHelper.isEmpty(table)) {
+				throw new IllegalArgumentException("The parameters host, keyspace and table must be specified, in case of scan");
+			}
+			if (scanSplits <= 0 || scanThreads <= 0) {
+				throw new IllegalArgumentException("The parameters scanSplits and scanThreads must be greater than zero");
+			}
+			return;
+		}
 		if (ObjectHelper.isEmpty(host) || ObjectHelper.isEmpty(keyspace) || ObjectHelper.isEmpty(pollingQuery)) {
 			throw new IllegalArgumentException("The parameters host, keyspace and pollingQuery must be specified");
 		} 
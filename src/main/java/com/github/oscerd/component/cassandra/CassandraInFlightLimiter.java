@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.exceptions.BusyPoolException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.QueryExecutionException;
+
+/**
+ * Bounds the requests in flight of an endpoint with a fair semaphore, so that a burst of exchanges
+ * from concurrent consumers or parallel splitters does not flood the pools of the driver: the
+ * exchanges get a permit in the order they arrive and give it back when they are done. The
+ * exchanges not getting one according to the policy are rejected and counted.
+ * 
+ * An adaptive limiter adjusts its limit between minInFlight and maxInFlight with an additive
+ * increase, multiplicative decrease algorithm, on the latency of the requests to the driver: it
+ * starts at minInFlight, grows by one permit for each request completing under the latency
+ * threshold while at least half of the permits are taken, and shrinks by the backoff ratio when
+ * a request completes over the threshold or fails because the cluster is overloaded or timing
+ * out. It shrinks at most once per latency window: only the requests sent after the last
+ * decrease can decrease it again, the ones in flight then having been sent under the old limit.
+ */
+class CassandraInFlightLimiter {
+
+    private final int minInFlight;
+    private final int maxInFlight;
+    private final CassandraInFlightPolicy policy;
+    private final long maxInFlightWait;
+    private final boolean adaptive;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Permits permits;
+    private final AtomicLong rejections = new AtomicLong();
+    private volatile int limit;
+    // the time of the last decrease, guarded by this
+    private long decreasedAt = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    CassandraInFlightLimiter(int maxInFlight, CassandraInFlightPolicy policy, long maxInFlightWait) {
+        this(maxInFlight, maxInFlight, policy, maxInFlightWait, false, 0, 1.0);
+    }
+
+    CassandraInFlightLimiter(int minInFlight, int maxInFlight, CassandraInFlightPolicy policy, long maxInFlightWait,
+            boolean adaptive, long latencyThreshold, double backoffRatio) {
+        this.minInFlight = minInFlight;
+        this.maxInFlight = maxInFlight;
+        this.policy = policy;
+        this.maxInFlightWait = maxInFlightWait;
+        this.adaptive = adaptive;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.backoffRatio = backoffRatio;
+        this.limit = adaptive ? minInFlight : maxInFlight;
+        this.permits = new Permits(limit);
+    }
+
+    /**
+     * Takes a permit for a request, blocking, failing at once or waiting according to the policy
+     * when all of them are taken.
+     * 
+     * @throws CassandraException when the request is rejected
+     */
+    void acquire() throws CassandraException {
+        boolean acquired;
+        try {
+            switch (policy) {
+            case block:
+                permits.acquire();
+                acquired = true;
+                break;
+            case wait:
+                acquired = permits.tryAcquire(maxInFlightWait, TimeUnit.MILLISECONDS);
+                break;
+            default:
+                // unlike tryAcquire(), honors the fairness of the semaphore
+                acquired = permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+                break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejections.incrementAndGet();
+            throw new CassandraException("Interrupted while waiting for one of the " + limit + " requests in flight to complete", e);
+        }
+        if (!acquired) {
+            rejections.incrementAndGet();
+            throw new CassandraException("The endpoint already has " + limit + " requests in flight");
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * Gives back the permit of a request whose driver call took the given latency, negative
+     * when the request was not sent, with the given failure or null, adjusting the limit first
+     * when it is adaptive and the request was sent.
+     * 
+     * @param latencyNanos
+     * @param failure
+     */
+    void release(long latencyNanos, Throwable failure) {
+        if (adaptive && latencyNanos >= 0) {
+            adjust(System.nanoTime(), latencyNanos, latencyNanos > latencyThresholdNanos || isOverload(failure));
+        }
+        permits.release();
+    }
+
+    private synchronized void adjust(long now, long latencyNanos, boolean overloaded) {
+        // the permit of the request is still taken
+        int inFlight = limit - permits.availablePermits();
+        if (overloaded) {
+            // a request sent before the last decrease does not decrease the limit again
+            if (now - latencyNanos - decreasedAt < 0) {
+                return;
+            }
+            int decreased = Math.max(minInFlight, (int) (limit * backoffRatio));
+            if (decreased < limit) {
+                permits.reducePermits(limit - decreased);
+                limit = decreased;
+            }
+            decreasedAt = now;
+        } else if (limit < maxInFlight && inFlight * 2 >= limit) {
+            limit++;
+            permits.release();
+        }
+    }
+
+    /**
+     * Whether the failure, or one of its causes, tells that the cluster is overloaded or slow:
+     * a timeout, an unavailable or overloaded coordinator, or saturated connection pools.
+     */
+    static boolean isOverload(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof QueryExecutionException || t instanceof OperationTimedOutException
+                    || t instanceof BusyPoolException || t instanceof NoHostAvailableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return limit - permits.availablePermits();
+    }
+
+    long getRejections() {
+        return rejections.get();
+    }
+
+    private static final class Permits extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private Permits(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ObjectNameFactory;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * The metrics of a {@link CassandraEndpoint}: per operation latency, rows, errors and requests
+ * in flight, the time spent formatting the results, the prepared statement cache, the limits of
+ * the requests in flight and of their rate, the requests sent to each host and its connection
+ * pool, and the metrics of the driver. They are registered in JMX with the endpoint URI as the endpoint key
+ * of their object name.
+ */
+public class CassandraMetrics {
+
+    public static final String DOMAIN = "com.github.oscerd.component.cassandra";
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final String endpointName;
+    private JmxReporter reporter;
+    private Cluster cluster;
+    private volatile Session session;
+    private final Set<Host> pooledHosts = Collections.newSetFromMap(new ConcurrentHashMap<Host, Boolean>());
+    // times the requests the driver sends to each host, retries and speculative executions included
+    private final LatencyTracker hostsTracker = new LatencyTracker() {
+
+        @Override
+        public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+            Session pooled = session;
+            if (pooled != null && pooledHosts.add(host)) {
+                registerPoolGauges(pooled, host);
+            }
+            registry.timer(MetricRegistry.name("hosts", host.getDatacenter(), host.getAddress().getHostAddress(), "requests"))
+                    .update(newLatencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void onRegister(Cluster cluster) {
+        }
+
+        @Override
+        public void onUnregister(Cluster cluster) {
+        }
+    };
+
+	/**
+	 * @param endpointName
+	 */
+    public CassandraMetrics(String endpointName) {
+        this.endpointName = endpointName;
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Registers the gauges of the prepared statement cache, the timers of the requests and the
+     * gauges of the connection pool per host, and the metrics of the driver, when the cluster has
+     * them enabled, then starts reporting to JMX.
+     * 
+     * @param session
+     * @param statementCache
+     */
+    void start(Session session, final CassandraStatementCache statementCache) {
+        registry.register("statementCache.size", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return statementCache.getSize();
+            }
+        });
+        registry.register("statementCache.hits", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return statementCache.getHits();
+            }
+        });
+        registry.register("statementCache.misses", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return statementCache.getMisses();
+            }
+        });
+        registry.register("statementCache.evictions", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return statementCache.getEvictions();
+            }
+        });
+        Cluster cluster = session != null ? session.getCluster() : null;
+        if (cluster != null) {
+            this.session = session;
+            this.cluster = cluster;
+            for (Host host : session.getState().getConnectedHosts()) {
+                if (pooledHosts.add(host)) {
+                    registerPoolGauges(session, host);
+                }
+            }
+            cluster.register(hostsTracker);
+        }
+        if (cluster != null && cluster.getMetrics() != null) {
+            registry.register("driver", cluster.getMetrics().getRegistry());
+        }
+        reporter = JmxReporter.forRegistry(registry).inDomain(DOMAIN).convertDurationsTo(TimeUnit.MILLISECONDS)
+                .createsObjectNamesWith(new ObjectNameFactory() {
+
+                    @Override
+                    public ObjectName createName(String type, String domain, String name) {
+                        Hashtable<String, String> properties = new Hashtable<String, String>();
+                        properties.put("endpoint", ObjectName.quote(endpointName));
+                        properties.put("name", ObjectName.quote(name));
+                        properties.put("type", type);
+                        try {
+                            return new ObjectName(domain, properties);
+                        } catch (MalformedObjectNameException e) {
+                            throw new IllegalArgumentException("Invalid metric name: " + name, e);
+                        }
+                    }
+                }).build();
+        reporter.start();
+    }
+
+    /**
+     * Registers the gauges of the requests in flight under the limit of the endpoint and of the
+     * exchanges rejected by it.
+     * 
+     * @param limiter
+     */
+    void register(final CassandraInFlightLimiter limiter) {
+        registry.register("inFlightLimit.limit", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return limiter.getLimit();
+            }
+        });
+        registry.register("inFlightLimit.inFlight", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return limiter.getInFlight();
+            }
+        });
+        registry.register("inFlightLimit.rejections", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return limiter.getRejections();
+            }
+        });
+    }
+
+    /**
+     * Registers the gauges of the requests throttled and rejected by the rate limit of the endpoint,
+     * and of the keys it limits.
+     * 
+     * @param limiter
+     */
+    void register(final CassandraRateLimiter limiter) {
+        registry.register("rateLimit.throttled", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return limiter.getThrottled();
+            }
+        });
+        registry.register("rateLimit.rejections", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return limiter.getRejections();
+            }
+        });
+        registry.register("rateLimit.keys", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return limiter.getKeys();
+            }
+        });
+    }
+
+    void stop() {
+        if (cluster != null) {
+            cluster.unregister(hostsTracker);
+            cluster = null;
+            session = null;
+        }
+        pooledHosts.clear();
+        if (reporter != null) {
+            reporter.stop();
+            reporter = null;
+        }
+        registry.removeMatching(MetricFilter.ALL);
+    }
+
+    /**
+     * Registers the gauges of the connection pool of the session to the host: its open and trashed
+     * connections, its requests in flight and its saturation, the ratio of the requests in flight
+     * to the requests its open connections accept. The driver only exposes the borrow attempts
+     * queued on the pools of the whole session, as driver.request-queue-depth.
+     * 
+     * @param pooled
+     * @param host
+     */
+    private void registerPoolGauges(final Session pooled, final Host host) {
+        String prefix = MetricRegistry.name("hosts", host.getDatacenter(), host.getAddress().getHostAddress(), "pool");
+        registry.register(MetricRegistry.name(prefix, "openConnections"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pooled.getState().getOpenConnections(host);
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "trashedConnections"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pooled.getState().getTrashedConnections(host);
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "inFlight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pooled.getState().getInFlightQueries(host);
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "saturation"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                Session.State state = pooled.getState();
+                HostDistance distance = pooled.getCluster().getConfiguration().getPolicies().getLoadBalancingPolicy().distance(host);
+                int capacity = state.getOpenConnections(host)
+                        * pooled.getCluster().getConfiguration().getPoolingOptions().getMaxRequestsPerConnection(distance);
+                return capacity > 0 ? (double) state.getInFlightQueries(host) / capacity : 0.0;
+            }
+        });
+    }
+
+    /**
+     * Starts timing a request of the operation, counting it in flight until it is done.
+     * 
+     * @param operation
+     */
+    public Request start(String operation) {
+        return new Request(operation);
+    }
+
+    /**
+     * Starts timing the format of a result with the format strategy.
+     * 
+     * @param format
+     */
+    public Timer.Context timeFormat(String format) {
+        return registry.timer(MetricRegistry.name("format", format)).time();
+    }
+
+    /**
+     * Counts the rows of a response body: the rows fetched of a result set, the elements
+     * of a collection, one for a row and none for any other body.
+     * 
+     * @param body
+     */
+    static long rows(Object body) {
+        if (body instanceof ResultSet) {
+            return ((ResultSet) body).getAvailableWithoutFetching();
+        }
+        if (body instanceof Collection) {
+            return ((Collection<?>) body).size();
+        }
+        return body instanceof Row ? 1 : 0;
+    }
+
+    /**
+     * Counts the rows of a response body formatted from a result set with the given rows
+     * fetched: the lazy formats, such as iterator or stream, count the rows fetched, the others
+     * the rows they have read.
+     * 
+     * @param fetched
+     * @param body
+     */
+    static long rows(int fetched, Object body) {
+        return Math.max(fetched, rows(body));
+    }
+
+    /**
+     * A request in flight.
+     */
+    public class Request {
+
+        private final String operation;
+        private final Counter inFlight;
+        private final long start = System.nanoTime();
+
+        private Request(String operation) {
+            this.operation = operation;
+            this.inFlight = registry.counter(MetricRegistry.name(operation, "inFlight"));
+            inFlight.inc();
+        }
+
+        /**
+         * Records the latency and the rows of the request, or its error.
+         * 
+         * @param rows
+         * @param error
+         */
+        public void done(long rows, Throwable error) {
+            inFlight.dec();
+            registry.timer(MetricRegistry.name(operation, "latency")).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                Throwable cause = error instanceof CassandraException && error.getCause() != null ? error.getCause() : error;
+                registry.meter(MetricRegistry.name(operation, "errors", cause.getClass().getSimpleName())).mark();
+            } else {
+                registry.histogram(MetricRegistry.name(operation, "rows")).update(rows);
+            }
+        }
+    }
+}
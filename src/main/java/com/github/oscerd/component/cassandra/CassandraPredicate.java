@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+/**
+ * A predicate of a where clause, the column compared to the value with the operator, as
+ * carried by the list of the CASSANDRA_WHERE_PREDICATES header. The column and operator make
+ * the shape of the prepared statement, the value is bound to it.
+ */
+public final class CassandraPredicate {
+
+    private final String column;
+    private final CassandraOperator operator;
+    private final Object value;
+
+    public CassandraPredicate(String column, CassandraOperator operator, Object value) {
+        if (column == null || operator == null) {
+            throw new IllegalArgumentException("The column and operator of a where predicate must be specified");
+        }
+        if (operator == CassandraOperator.asc || operator == CassandraOperator.desc) {
+            throw new IllegalArgumentException("Operator not supported in a where predicate. Value: " + operator);
+        }
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public static CassandraPredicate eq(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.eq, value);
+    }
+
+    public static CassandraPredicate gt(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.gt, value);
+    }
+
+    public static CassandraPredicate gte(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.gte, value);
+    }
+
+    public static CassandraPredicate lt(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.lt, value);
+    }
+
+    public static CassandraPredicate lte(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.lte, value);
+    }
+
+    public static CassandraPredicate in(String column, Object value) {
+        return new CassandraPredicate(column, CassandraOperator.in, value);
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public CassandraOperator getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return column + " " + operator + " " + value;
+    }
+}
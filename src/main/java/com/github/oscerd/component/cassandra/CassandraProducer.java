@@ -16,30 +16,41 @@
  */
 package com.github.oscerd.component.cassandra;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.camel.AsyncCallback;
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
-import org.apache.camel.support.DefaultProducer;
+import org.apache.camel.support.DefaultAsyncProducer;
 import org.apache.camel.support.MessageHelper;
 import org.apache.camel.util.ObjectHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Timer;
 import com.datastax.driver.core.BatchStatement;
-import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
@@ -48,14 +59,26 @@ import com.datastax.driver.core.querybuilder.Update;
 import com.datastax.driver.core.querybuilder.Update.Assignments;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
 import com.datastax.driver.core.schemabuilder.SchemaStatement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  *  Represents a Cassandra Producer
  */
-public class CassandraProducer extends DefaultProducer {
+public class CassandraProducer extends DefaultAsyncProducer {
     private static final Logger LOG = LoggerFactory.getLogger(CassandraProducer.class);
+    // the time the statements of the exchange are sent to the driver, for the adaptive in-flight limit
+    private static final String EXECUTION_STARTED = "CamelCassandraExecutionStarted";
+    private static final String ROWS_FETCHED = "CamelCassandraRowsFetched";
 
     private CassandraEndpoint endpoint;
+    private ExecutorService executorService;
+    private boolean shutdownExecutorService;
+    private CassandraWriteBatcher writeBatcher;
+    private CassandraCounterAccumulator counterAccumulator;
+    private ScheduledExecutorService flushExecutorService;
+    private CassandraCqlTemplate cqlTemplate;
 
 	/**
 	 * @param endpoint
@@ -65,622 +88,993 @@ public class CassandraProducer extends DefaultProducer {
         this.endpoint = endpoint;
     }
 
+    @Override
+    public CassandraEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        if (endpoint.getResultSetFormatStrategy() == null) {
+            endpoint.defineFormatStrategy();
+        }
+        if (!ObjectHelper.isEmpty(endpoint.getCql())) {
+            cqlTemplate = new CassandraCqlTemplate(endpoint.getCql(), endpoint.getCamelContext());
+            if (endpoint.getCassandraSession() != null) {
+                // prepared up front, the exchanges then find it in the statement cache
+                prepareCql(endpoint.getCassandraSession());
+            }
+        }
+        if (endpoint.isAsync() || endpoint.isBatchWrites()) {
+            executorService = endpoint.getAsyncExecutorService();
+            if (executorService == null) {
+                executorService = endpoint.getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "CassandraProducer", endpoint.getAsyncPoolSize());
+                shutdownExecutorService = true;
+            }
+        }
+        if (endpoint.isBatchWrites() || endpoint.isCoalesceCounters()) {
+            flushExecutorService = endpoint.getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "CassandraBatchFlush");
+        }
+        if (endpoint.isCoalesceCounters()) {
+            counterAccumulator = new CassandraCounterAccumulator(this, endpoint.getBatchMaxStatements(), endpoint.getCounterFlushThreshold());
+            flushExecutorService.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    counterAccumulator.flush();
+                }
+            }, endpoint.getCounterFlushInterval(), endpoint.getCounterFlushInterval(), TimeUnit.MILLISECONDS);
+        }
+        if (endpoint.isBatchWrites()) {
+            writeBatcher = new CassandraWriteBatcher(this, endpoint.getBatchMaxStatements(), endpoint.getBatchMaxBytes(), executorService);
+            flushExecutorService.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeBatcher.flush();
+                }
+            }, endpoint.getBatchFlushInterval(), endpoint.getBatchFlushInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (flushExecutorService != null) {
+            endpoint.getCamelContext().getExecutorServiceManager().shutdownNow(flushExecutorService);
+            flushExecutorService = null;
+        }
+        if (writeBatcher != null) {
+            // the buffered writes are executed, and their exchanges completed, before the executor
+            // completing them shuts down: the driver fails them within twice the read timeout
+            writeBatcher.flush();
+            if (!writeBatcher.awaitOutstanding(2L * endpoint.getReadTimeout())) {
+                LOG.warn("Stopping with batches of writes still in flight, their exchanges may not be completed");
+            }
+            writeBatcher = null;
+        }
+        if (counterAccumulator != null) {
+            // the accumulated deltas are written before the producer stops
+            counterAccumulator.flush();
+            counterAccumulator = null;
+        }
+        if (executorService != null && shutdownExecutorService) {
+            endpoint.getCamelContext().getExecutorServiceManager().shutdownGraceful(executorService);
+        }
+        executorService = null;
+        shutdownExecutorService = false;
+        super.doStop();
+    }
+
     /**
     * Method that processes the exchange and choose the appropriate operation based on the exchange content.
+    * When the endpoint has a cql statement, it is executed with the values of the exchange bound to it.
+    * When the endpoint is asynchronous the statement is executed with executeAsync and the callback is
+    * completed on the producer executor service once the result is available.
+    * 
+    * When the endpoint batches writes, the insert and update statements are buffered and executed
+    * in unlogged batches of the same partition, completing the exchange once its batch is acknowledged.
+    * When the endpoint coalesces counters, the counter operations only add their delta to the one of
+    * their counter and complete at once: the sums are written when the producer flushes them.
+    * When the endpoint has a rate limit, the statements of the exchange wait for their tokens, in the
+    * buckets of the value of the rateLimitKeyHeader if any, before they are executed or buffered.
+    * When the endpoint has maxInFlight, the exchange takes one of its permits before anything else
+    * and gives it back once it is done, or fails when the policy rejects it. An adaptive limit is
+    * adjusted on the round trip time of the exchange.
     * 
     * @param exchange
-    * @throws Exception
+    * @param routeCallback
     */
-    public void process(Exchange exchange) throws Exception {
-        Cluster cassandra = endpoint.getCassandraCluster();
-        this.defineFormatStrategy();
-        if (cassandra == null){
-        	cassandra = buildCluster(endpoint, exchange);
-        }
-        String body = (String) exchange.getIn().getBody();
-        if (body != null && !ObjectHelper.isEmpty(body)) {
-            Session session = cassandra.connect(endpoint.getKeyspace());
+    @Override
+    public boolean process(final Exchange exchange, final AsyncCallback routeCallback) {
+        final AsyncCallback limitedCallback;
+        try {
+            limitedCallback = limit(exchange, routeCallback);
+        } catch (CassandraException e) {
+            exchange.setException(e);
+            routeCallback.done(true);
+            return true;
+        }
+        final AsyncCallback callback = instrument(exchange, limitedCallback);
+        final Session session;
+        final Statement statement;
+        final boolean formatted;
+        final boolean batched;
+        List<Statement> batches = null;
+        try {
+            session = getSession(exchange);
+            String body = cqlTemplate == null ? (String) exchange.getIn().getBody() : null;
+            if (cqlTemplate != null) {
+                statement = bind(prepareCql(session), cqlTemplate.values(exchange));
+                formatted = true;
+                batched = false;
+            } else if (body != null && !ObjectHelper.isEmpty(body)) {
+                statement = new SimpleStatement(body);
+                if (endpoint.isIdempotent()) {
+                    statement.setIdempotent(true);
+                }
+                formatted = false;
+                batched = false;
+            } else {
+                CassandraOperations operation = getOperation(exchange);
+                if (counterAccumulator != null && coalesceCounter(exchange, operation, session)) {
+                    Message responseMessage = prepareResponseMessage(exchange);
+                    responseMessage.setHeader(CassandraConstants.CASSANDRA_COUNTER_ACCEPTED, true);
+                    callback.done(true);
+                    return true;
+                }
+                if (operation == CassandraOperations.batchOperation) {
+                    batches = createBatchOperationStatements(exchange, operation, session);
+                    statement = batches.isEmpty() ? null : batches.get(0);
+                } else {
+                    statement = createStatement(operation, exchange, session);
+                }
+                formatted = isFormatted(operation);
+                batched = writeBatcher != null && statement != null
+                        && (operation == CassandraOperations.insert || operation == CassandraOperations.update);
+            }
+            if (statement != null && endpoint.getFetchSize() > 0) {
+                statement.setFetchSize(endpoint.getFetchSize());
+            }
+            CassandraRateLimiter rateLimiter = endpoint.getRateLimiter();
+            if (rateLimiter != null && statement != null) {
+                Object key = endpoint.getRateLimitKeyHeader() != null ? exchange.getIn().getHeader(endpoint.getRateLimitKeyHeader()) : null;
+                for (Statement request : batches != null ? batches : Collections.singletonList(statement)) {
+                    rateLimiter.acquire(key, session, request);
+                }
+            }
+        } catch (Exception e) {
+            exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
+            callback.done(true);
+            return true;
+        }
+        if (batched && writeBatcher.add(session, statement, exchange, callback)) {
+            return false;
+        }
+        if (batches != null && batches.size() > 1) {
+            return executeBatches(exchange, callback, session, batches, formatted);
+        }
+        if (!endpoint.isAsync() || statement == null) {
             try {
-                executePlainCQLQuery(exchange, body, session);
+                ResultSet result = null;
+                if (statement != null) {
+                    executing(exchange);
+                    result = session.execute(statement);
+                }
+                setResponse(exchange, result, formatted);
             } catch (Exception e) {
-                throw CassandraComponent.wrapInCamelCassandraException(e);
-            } finally {
-                session.close();
-                if (!endpoint.isExternalCluster()) cassandra.close();
+                exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
             }
-        } else {
-            CassandraOperations operation = endpoint.getOperation();
-            Session session = cassandra.connect(endpoint.getKeyspace());
-            Object header = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATION_HEADER);
-            if (header != null) {
-                LOG.debug("Overriding default operation with operation specified on header: {}", header);
+            callback.done(true);
+            return true;
+        }
+        executing(exchange);
+        ResultSetFuture future = session.executeAsync(statement);
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+
+            @Override
+            public void onSuccess(ResultSet result) {
                 try {
-                    if (header instanceof CassandraOperations) {
-                        operation = ObjectHelper.cast(CassandraOperations.class, header);
-                    } else {
-                        // evaluate as a String
-                        operation = CassandraOperations.valueOf(exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATION_HEADER, String.class));
-                    }
+                    setResponse(exchange, result, formatted);
                 } catch (Exception e) {
-                    throw new CassandraException("Operation specified on header is not supported. Value: " + header, e);
+                    exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
+                } finally {
+                    callback.done(false);
                 }
             }
+
+            @Override
+            public void onFailure(Throwable t) {
+                exchange.setException(CassandraComponent.wrapInCamelCassandraException(t));
+                callback.done(false);
+            }
+        }, executorService);
+        return false;
+    }
+
+    /**
+     * Executes the batches of a batch operation concurrently. The response is the result of the
+     * first batch, and the exchange fails as soon as one of the batches fails.
+     * 
+     * @param exchange
+     * @param callback
+     * @param session
+     * @param batches
+     * @param formatted
+     */
+    private boolean executeBatches(final Exchange exchange, final AsyncCallback callback, Session session, List<Statement> batches, final boolean formatted) {
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(batches.size());
+        executing(exchange);
+        for (Statement batch : batches) {
+            futures.add(session.executeAsync(batch));
+        }
+        ListenableFuture<List<ResultSet>> results = Futures.allAsList(futures);
+        if (!endpoint.isAsync()) {
             try {
-                invokeOperation(operation, exchange, session);
+                setResponse(exchange, results.get().get(0), formatted);
+            } catch (ExecutionException e) {
+                exchange.setException(CassandraComponent.wrapInCamelCassandraException(e.getCause()));
             } catch (Exception e) {
-                throw CassandraComponent.wrapInCamelCassandraException(e);
-            } finally {
-                session.close();
-                if (!endpoint.isExternalCluster()) cassandra.close();
+                exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
             }
+            callback.done(true);
+            return true;
         }
+        Futures.addCallback(results, new FutureCallback<List<ResultSet>>() {
+
+            @Override
+            public void onSuccess(List<ResultSet> result) {
+                try {
+                    setResponse(exchange, result.get(0), formatted);
+                } catch (Exception e) {
+                    exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
+                } finally {
+                    callback.done(false);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                exchange.setException(CassandraComponent.wrapInCamelCassandraException(t));
+                callback.done(false);
+            }
+        }, executorService);
+        return false;
     }
 
-    protected void executePlainCQLQuery(Exchange exchange, String query, Session session) {
-        ResultSet result = null;
-        result = session.execute(query);
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(result);
+    /**
+     * Records the time the statements of the exchange are sent to the driver, when the endpoint
+     * has an adaptive in-flight limit.
+     * 
+     * @param exchange
+     */
+    void executing(Exchange exchange) {
+        if (endpoint.isAdaptiveInFlight() && endpoint.getInFlightLimiter() != null) {
+            exchange.setProperty(EXECUTION_STARTED, System.nanoTime());
+        }
+    }
+
+    /**
+     * Takes a permit of the limiter of the requests in flight, if the endpoint has one, and wraps
+     * the callback to give it back when the exchange is done, with its failure and the latency of
+     * its statements from the time they are sent to the driver: the time the exchange waits for
+     * the rate limit or in a buffered batch is not a latency of the cluster.
+     * 
+     * @param exchange
+     * @param callback
+     * @throws CassandraException when the limiter rejects the exchange
+     */
+    private AsyncCallback limit(final Exchange exchange, final AsyncCallback callback) throws CassandraException {
+        final CassandraInFlightLimiter limiter = endpoint.getInFlightLimiter();
+        if (limiter == null) {
+            return callback;
+        }
+        limiter.acquire();
+        return new AsyncCallback() {
+
+            @Override
+            public void done(boolean doneSync) {
+                Object started = exchange.removeProperty(EXECUTION_STARTED);
+                long latency = started instanceof Long ? System.nanoTime() - (Long) started : -1;
+                limiter.release(latency, exchange.getException());
+                callback.done(doneSync);
+            }
+        };
+    }
+
+    /**
+     * Wraps the callback to record the metrics of the exchange when it is done, if the
+     * endpoint has metrics.
+     * 
+     * @param exchange
+     * @param callback
+     */
+    private AsyncCallback instrument(final Exchange exchange, final AsyncCallback callback) {
+        CassandraMetrics metrics = endpoint.getCassandraMetrics();
+        if (metrics == null) {
+            return callback;
+        }
+        final CassandraMetrics.Request request = metrics.start(getOperationName(exchange));
+        return new AsyncCallback() {
+
+            @Override
+            public void done(boolean doneSync) {
+                Object fetched = exchange.removeProperty(ROWS_FETCHED);
+                long rows = fetched instanceof Long ? (Long) fetched : CassandraMetrics.rows(exchange.hasOut() ? exchange.getOut().getBody() : null);
+                request.done(rows, exchange.getException());
+                callback.done(doneSync);
+            }
+        };
+    }
+
+    private String getOperationName(Exchange exchange) {
+        if (cqlTemplate != null) {
+            return "cql";
+        }
+        Object body = exchange.getIn().getBody();
+        if (body instanceof String && !ObjectHelper.isEmpty(body)) {
+            return "query";
+        }
+        try {
+            CassandraOperations operation = getOperation(exchange);
+            return operation != null ? operation.name() : "unknown";
+        } catch (CassandraException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Adds the delta of a counter operation to the counter accumulator, returning false when the
+     * exchange is not a counter operation on a single counter and must be executed on its own.
+     * 
+     * @param exchange
+     * @param operation
+     * @param session
+     * @throws Exception
+     */
+    private boolean coalesceCounter(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        if (operation != CassandraOperations.incrCounter && operation != CassandraOperations.decrCounter) {
+            return false;
+        }
+        String counterColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN);
+        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
+        Object whereValue = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+        if (counterColumn == null || getWhereOperator(exchange, whereColumn, whereValue) != CassandraOperator.eq) {
+            return false;
+        }
+        long counterValue = (long) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_VALUE);
+        long delta = operation == CassandraOperations.incrCounter ? counterValue : -counterValue;
+        // the statement the flush creates is validated before the exchange is accepted, so that
+        // an invalid counter fails its exchange instead of dropping its delta on the flush
+        createCounterStatement(session, counterColumn, whereColumn, whereValue, delta);
+        if (counterAccumulator.add(session, endpoint.getTable(), counterColumn, whereColumn, whereValue, delta)) {
+            flushExecutorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    counterAccumulator.flush();
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Returns the operation of the endpoint, unless the message overrides it with
+     * the operation header.
+     * 
+     * @param exchange
+     * @throws CassandraException
+     */
+    CassandraOperations getOperation(Exchange exchange) throws CassandraException {
+        CassandraOperations operation = endpoint.getOperation();
+        Object header = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATION_HEADER);
+        if (header != null) {
+            LOG.debug("Overriding default operation with operation specified on header: {}", header);
+            try {
+                if (header instanceof CassandraOperations) {
+                    operation = ObjectHelper.cast(CassandraOperations.class, header);
+                } else {
+                    // evaluate as a String
+                    operation = CassandraOperations.valueOf(exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATION_HEADER, String.class));
+                }
+            } catch (Exception e) {
+                throw new CassandraException("Operation specified on header is not supported. Value: " + header, e);
+            }
+        }
+        return operation;
     }
 
      /**
-     * Entry method that selects the appropriate Cassandra operation and executes
-     * it
+     * Entry method that selects the appropriate Cassandra operation and creates
+     * the statement executing it
      * 
      * @param operation
      * @param exchange
      * @param session
      * @throws Exception
      */
-    protected void invokeOperation(CassandraOperations operation, Exchange exchange, Session session) throws Exception {
+    protected Statement createStatement(CassandraOperations operation, Exchange exchange, Session session) throws Exception {
+        if (operation == null) {
+            throw new CassandraException("No operation specified on the endpoint or on the message");
+        }
         switch (operation) {
         case selectAll:
-            doSelectAll(exchange, CassandraOperations.selectAll, session);
-            break;
+            return createSelectAllStatement(exchange, CassandraOperations.selectAll, session);
         case selectAllWhere:
-            doSelectWhere(exchange, CassandraOperations.selectAllWhere, session);
-            break;
+            return createSelectWhereStatement(exchange, CassandraOperations.selectAllWhere, session);
         case selectColumn:
-            doSelectColumn(exchange, CassandraOperations.selectColumn, session);
-            break;
+            return createSelectColumnStatement(exchange, CassandraOperations.selectColumn, session);
         case selectColumnWhere:
-            doSelectColumnWhere(exchange, CassandraOperations.selectColumnWhere, session);
-            break;
+            return createSelectColumnWhereStatement(exchange, CassandraOperations.selectColumnWhere, session);
         case insert:
-            doInsert(exchange, CassandraOperations.insert, session);
-            break;
+            return createInsertStatement(exchange, CassandraOperations.insert, session);
         case update:
-            doUpdate(exchange, CassandraOperations.update, session);
-            break;
+            return createUpdateStatement(exchange, CassandraOperations.update, session);
         case deleteColumnWhere:
-            doDeleteColumnWhere(exchange, CassandraOperations.deleteColumnWhere, session);
-            break;
+            return createDeleteColumnWhereStatement(exchange, CassandraOperations.deleteColumnWhere, session);
         case deleteWhere:
-            doDeleteWhere(exchange, CassandraOperations.deleteWhere, session);
-            break;
+            return createDeleteWhereStatement(exchange, CassandraOperations.deleteWhere, session);
         case incrCounter:
-            doIncrCounter(exchange, CassandraOperations.incrCounter, session);
-            break;
+            return createIncrCounterStatement(exchange, CassandraOperations.incrCounter, session);
         case decrCounter:
-            doDecrCounter(exchange, CassandraOperations.decrCounter, session);
-            break;
+            return createDecrCounterStatement(exchange, CassandraOperations.decrCounter, session);
         case batchOperation:
-            doBatchOperation(exchange, CassandraOperations.batchOperation, session);
-            break;
+            return createBatchOperationStatement(exchange, CassandraOperations.batchOperation, session);
         case createIndex:
-            doCreateIndex(exchange, CassandraOperations.createIndex, session);
-            break;
+            return createCreateIndexStatement(exchange, CassandraOperations.createIndex, session);
         case dropIndex:
-            doDropIndex(exchange, CassandraOperations.dropIndex, session);
-            break;
+            return createDropIndexStatement(exchange, CassandraOperations.dropIndex, session);
         default:
             throw new CassandraException("Operation not supported. Value: " + operation);
         }
     }
 
     /**
-    * Method that executes a select all operation
+     * The select column and index operations, like plain queries, return the
+     * result set as it is: the other operations apply the format strategy.
+     * 
+     * @param operation
+     */
+    private boolean isFormatted(CassandraOperations operation) {
+        return operation != CassandraOperations.selectColumn && operation != CassandraOperations.createIndex
+                && operation != CassandraOperations.dropIndex;
+    }
+
+    void setResponse(Exchange exchange, ResultSet result, boolean formatted) {
+        Message responseMessage = prepareResponseMessage(exchange);
+        if (!formatted) {
+            responseMessage.setBody(result);
+            return;
+        }
+        CassandraMetrics metrics = endpoint.getCassandraMetrics();
+        if (metrics == null) {
+            responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+            return;
+        }
+        // counted before the format, as the lazy formats hide the result set from the metrics
+        int fetched = result != null ? result.getAvailableWithoutFetching() : 0;
+        Timer.Context format = metrics.timeFormat(endpoint.getFormat());
+        try {
+            Object body = endpoint.getResultSetFormatStrategy().getResult(result);
+            responseMessage.setBody(body);
+            exchange.setProperty(ROWS_FETCHED, CassandraMetrics.rows(fetched, body));
+        } finally {
+            format.stop();
+        }
+    }
+
+    /**
+    * Method that creates the statement of a select all operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doSelectAll(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
+    protected Statement createSelectAllStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
 
         if (operation == CassandraOperations.selectAll) {
-            Select select = QueryBuilder.select().all().from(endpoint.getTable());
-            Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
-            appendLimit(select, limit);
-            applyConsistencyLevel(select, endpoint.getConsistencyLevel());
-            result = session.execute(select);
+            final Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
+            List<Object> values = new ArrayList<Object>();
+            PreparedStatement prepared = prepare(session, shape(operation, hasLimit(limit)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Select select = QueryBuilder.select().all().from(endpoint.getTable());
+                    appendLimit(select, limit);
+                    return select;
+                }
+            });
+            addLimitValue(values, limit);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a select all where operation
+    * Method that creates the statement of a select all where operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doSelectWhere(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Select.Where select = null;
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
-        Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+    protected Statement createSelectWhereStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final List<CassandraPredicate> predicates = getWherePredicates(exchange);
         if (operation == CassandraOperations.selectAllWhere) {
-            select = QueryBuilder.select().all().from(endpoint.getTable()).where();
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    select.and(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    select.and(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    select.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    select.and(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    select.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    select.and(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
-                }
-            }
-            String column = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_ORDERBY_COLUMN);
+            final String column = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_ORDERBY_COLUMN);
             String cassOrderDirection = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_ORDER_DIRECTION);
-            Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
-            appendOrderBy(select, cassOrderDirection, column);
-            appendLimit(select, limit);
-            applyConsistencyLevel(select, endpoint.getConsistencyLevel());
-            result = session.execute(select);
+            final CassandraOperator orderDirection = getOrderDirection(cassOrderDirection, column);
+            final Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
+            List<Object> values = new ArrayList<Object>();
+            PreparedStatement prepared = prepare(session, shape(operation, whereShape(predicates), orderDirection, column, hasLimit(limit)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Select.Where select = QueryBuilder.select().all().from(endpoint.getTable()).where();
+                    for (CassandraPredicate predicate : predicates) {
+                        select.and(whereClause(predicate.getOperator(), predicate.getColumn()));
+                    }
+                    appendOrderBy(select, orderDirection, column);
+                    appendLimit(select, limit);
+                    return select;
+                }
+            });
+            addWhereValues(values, predicates);
+            addLimitValue(values, limit);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a select column where operation
+    * Method that creates the statement of a select column where operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doSelectColumnWhere(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Select.Where select = null;
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
-        Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
-        String selectColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN);
+    protected Statement createSelectColumnWhereStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final List<CassandraPredicate> predicates = getWherePredicates(exchange);
+        final String selectColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN);
         if (operation == CassandraOperations.selectColumnWhere) {
-            select = QueryBuilder.select().column(selectColumn).from(endpoint.getTable()).where();
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    select.and(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    select.and(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    select.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    select.and(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    select.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    select.and(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            final Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
+            List<Object> values = new ArrayList<Object>();
+            PreparedStatement prepared = prepare(session, shape(operation, selectColumn, whereShape(predicates), hasLimit(limit)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Select.Where select = QueryBuilder.select().column(selectColumn).from(endpoint.getTable()).where();
+                    for (CassandraPredicate predicate : predicates) {
+                        select.and(whereClause(predicate.getOperator(), predicate.getColumn()));
+                    }
+                    appendLimit(select, limit);
+                    return select;
                 }
-            }
-            Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
-            appendLimit(select, limit);
-            applyConsistencyLevel(select, endpoint.getConsistencyLevel());
-            result = session.execute(select);
+            });
+            addWhereValues(values, predicates);
+            addLimitValue(values, limit);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a select column operation
+    * Method that creates the statement of a select column operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doSelectColumn(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Select select = null;
-        String selectColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN);
+    protected Statement createSelectColumnStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final String selectColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_SELECT_COLUMN);
         if (operation == CassandraOperations.selectColumn) {
-            select = QueryBuilder.select().column(selectColumn).from(endpoint.getTable());
-            Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
-            appendLimit(select, limit);
-            applyConsistencyLevel(select, endpoint.getConsistencyLevel());
-            result = session.execute(select);
+            final Integer limit = (Integer) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_LIMIT_NUMBER);
+            List<Object> values = new ArrayList<Object>();
+            PreparedStatement prepared = prepare(session, shape(operation, selectColumn, hasLimit(limit)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Select select = QueryBuilder.select().column(selectColumn).from(endpoint.getTable());
+                    appendLimit(select, limit);
+                    return select;
+                }
+            });
+            addLimitValue(values, limit);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(result);
+        return statement;
     }
 
     /**
-    * Method that executes an insert operation
+    * Method that creates the statement of an insert operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doInsert(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Insert insert = null;
+    protected Statement createInsertStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
         HashMap<String, Object> insertingObject = (HashMap<String, Object>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_INSERT_OBJECT);
         if (operation == CassandraOperations.insert) {
-            insert = QueryBuilder.insertInto(endpoint.getTable());
-            Iterator insertIterator = insertingObject.entrySet().iterator();
-            while (insertIterator.hasNext()) {
-                Map.Entry element = (Map.Entry) insertIterator.next();
-                insert.value((String) element.getKey(), element.getValue());
+            final List<String> columns = new ArrayList<String>(insertingObject.size());
+            List<Object> values = new ArrayList<Object>(insertingObject.size());
+            for (Map.Entry<String, Object> element : insertingObject.entrySet()) {
+                columns.add(element.getKey());
+                values.add(element.getValue());
             }
-            applyConsistencyLevel(insert, endpoint.getConsistencyLevel());
-            result = session.execute(insert);
+            PreparedStatement prepared = prepare(session, shape(operation, columns), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Insert insert = QueryBuilder.insertInto(endpoint.getTable());
+                    for (String column : columns) {
+                        insert.value(column, QueryBuilder.bindMarker());
+                    }
+                    return insert;
+                }
+            });
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes an update operation
+    * Method that creates the statement of an update operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doUpdate(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Update update = null;
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
-        Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+    protected Statement createUpdateStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final List<CassandraPredicate> predicates = getWherePredicates(exchange);
         HashMap<String, Object> updatingObject = (HashMap<String, Object>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_UPDATE_OBJECT);
         if (operation == CassandraOperations.update) {
-            update = QueryBuilder.update(endpoint.getTable());
-            Iterator updateIterator = updatingObject.entrySet().iterator();
-            while (updateIterator.hasNext()) {
-                Map.Entry element = (Map.Entry) updateIterator.next();
-                update.with(QueryBuilder.set((String) element.getKey(), element.getValue()));
+            final List<String> columns = new ArrayList<String>(updatingObject.size());
+            List<Object> values = new ArrayList<Object>(updatingObject.size() + predicates.size());
+            for (Map.Entry<String, Object> element : updatingObject.entrySet()) {
+                columns.add(element.getKey());
+                values.add(element.getValue());
             }
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    update.where(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    update.where(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    update.where(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    update.where(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            PreparedStatement prepared = prepare(session, shape(operation, columns, whereShape(predicates)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Update update = QueryBuilder.update(endpoint.getTable());
+                    for (String column : columns) {
+                        update.with(QueryBuilder.set(column, QueryBuilder.bindMarker()));
+                    }
+                    for (CassandraPredicate predicate : predicates) {
+                        update.where(whereClause(predicate.getOperator(), predicate.getColumn()));
+                    }
+                    return update;
                 }
-            }
-            applyConsistencyLevel(update, endpoint.getConsistencyLevel());
-            result = session.execute(update);
+            });
+            addWhereValues(values, predicates);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a delete where operation
+    * Method that creates the statement of a delete where operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doDeleteWhere(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Delete.Where delete = null;
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
-        Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+    protected Statement createDeleteWhereStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final List<CassandraPredicate> predicates = getWherePredicates(exchange);
         if (operation == CassandraOperations.deleteWhere) {
-            delete = QueryBuilder.delete().all().from(endpoint.getTable()).where();
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    delete.and(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    delete.and(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    delete.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    delete.and(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    delete.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    delete.and(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            List<Object> values = new ArrayList<Object>(predicates.size());
+            PreparedStatement prepared = prepare(session, shape(operation, whereShape(predicates)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Delete.Where delete = QueryBuilder.delete().all().from(endpoint.getTable()).where();
+                    for (CassandraPredicate predicate : predicates) {
+                        delete.and(whereClause(predicate.getOperator(), predicate.getColumn()));
+                    }
+                    return delete;
                 }
-            }
-            applyConsistencyLevel(delete, endpoint.getConsistencyLevel());
-            result = session.execute(delete);
+            });
+            addWhereValues(values, predicates);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a delete column where operation
+    * Method that creates the statement of a delete column where operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doDeleteColumnWhere(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Delete.Where delete = null;
-        String deleteColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_DELETE_COLUMN);
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
-        Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+    protected Statement createDeleteColumnWhereStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final String deleteColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_DELETE_COLUMN);
+        final List<CassandraPredicate> predicates = getWherePredicates(exchange);
         if (operation == CassandraOperations.deleteColumnWhere) {
-            delete = QueryBuilder.delete().column(deleteColumn).from(endpoint.getTable()).where();
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    delete.and(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    delete.and(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    delete.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    delete.and(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    delete.and(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    delete.and(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            List<Object> values = new ArrayList<Object>(predicates.size());
+            PreparedStatement prepared = prepare(session, shape(operation, deleteColumn, whereShape(predicates)), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Delete.Where delete = QueryBuilder.delete().column(deleteColumn).from(endpoint.getTable()).where();
+                    for (CassandraPredicate predicate : predicates) {
+                        delete.and(whereClause(predicate.getOperator(), predicate.getColumn()));
+                    }
+                    return delete;
                 }
-            }
-            applyConsistencyLevel(delete, endpoint.getConsistencyLevel());
-            result = session.execute(delete);
+            });
+            addWhereValues(values, predicates);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes an increment counter operation
+    * Method that creates the statement of an increment counter operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doIncrCounter(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Assignments update = null;
-        String counterColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN);
+    protected Statement createIncrCounterStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final String counterColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN);
         long counterValue = (long) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_VALUE);
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
+        final String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
         Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+        final CassandraOperator operator = getWhereOperator(exchange, whereColumn, whereValue);
         if (operation == CassandraOperations.incrCounter) {
-            update = QueryBuilder.update(endpoint.getTable()).with(QueryBuilder.incr(counterColumn, counterValue));
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    update.where(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    update.where(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    update.where(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    update.where(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            List<Object> values = new ArrayList<Object>(2);
+            PreparedStatement prepared = prepare(session, shape(operation, counterColumn, operator, whereColumn), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Assignments update = QueryBuilder.update(endpoint.getTable()).with(QueryBuilder.incr(counterColumn, QueryBuilder.bindMarker()));
+                    if (operator != null) {
+                        update.where(whereClause(operator, whereColumn));
+                    }
+                    return update;
                 }
-            }
-            applyConsistencyLevel(update, endpoint.getConsistencyLevel());
-            result = session.execute(update);
+            });
+            values.add(counterValue);
+            addWhereValue(values, operator, whereValue);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
     }
 
     /**
-    * Method that executes a decrement counter operation
+    * Method that creates the statement of a decrement counter operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doDecrCounter(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        Assignments update = null;
-        String counterColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN);
+    protected Statement createDecrCounterStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
+        final String counterColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_COLUMN);
         long counterValue = (long) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_VALUE);
-        String cassOperator = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR);
-        CassandraOperator operator = getCassandraOperator(cassOperator);
-        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
+        final String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
         Object whereValue = (Object) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+        final CassandraOperator operator = getWhereOperator(exchange, whereColumn, whereValue);
         if (operation == CassandraOperations.decrCounter) {
-            update = QueryBuilder.update(endpoint.getTable()).with(QueryBuilder.decr(counterColumn, counterValue));
-            if (whereColumn != null && whereValue != null) {
-                switch (operator) {
-                case eq:
-                    update.where(QueryBuilder.eq(whereColumn, whereValue));
-                    break;
-                case gt:
-                    update.where(QueryBuilder.gt(whereColumn, whereValue));
-                    break;
-                case gte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case lt:
-                    update.where(QueryBuilder.lt(whereColumn, whereValue));
-                    break;
-                case lte:
-                    update.where(QueryBuilder.gte(whereColumn, whereValue));
-                    break;
-                case in:
-                    update.where(QueryBuilder.in(whereColumn, (List<Object>)whereValue));
-                    break;
-                default:
-                    break;
+            List<Object> values = new ArrayList<Object>(2);
+            PreparedStatement prepared = prepare(session, shape(operation, counterColumn, operator, whereColumn), new CassandraStatementCache.StatementBuilder() {
+
+                @Override
+                public RegularStatement build() {
+                    Assignments update = QueryBuilder.update(endpoint.getTable()).with(QueryBuilder.decr(counterColumn, QueryBuilder.bindMarker()));
+                    if (operator != null) {
+                        update.where(whereClause(operator, whereColumn));
+                    }
+                    return update;
                 }
-            }
-            applyConsistencyLevel(update, endpoint.getConsistencyLevel());
-            result = session.execute(update);
+            });
+            values.add(counterValue);
+            addWhereValue(values, operator, whereValue);
+            statement = bind(prepared, values);
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        return statement;
+    }
+
+    /**
+    * Method that creates the statement adding the delta to the counter where the column equals the value,
+    * prepared with the same shape as the increment counter operation
+    * 
+    * @param session
+    * @param counterColumn
+    * @param whereColumn
+    * @param whereValue
+    * @param delta
+    * @throws Exception
+    */
+    Statement createCounterStatement(Session session, final String counterColumn, final String whereColumn, Object whereValue, long delta) throws Exception {
+        PreparedStatement prepared = prepare(session, shape(CassandraOperations.incrCounter, counterColumn, CassandraOperator.eq, whereColumn), new CassandraStatementCache.StatementBuilder() {
+
+            @Override
+            public RegularStatement build() {
+                return QueryBuilder.update(endpoint.getTable()).with(QueryBuilder.incr(counterColumn, QueryBuilder.bindMarker()))
+                        .where(whereClause(CassandraOperator.eq, whereColumn));
+            }
+        });
+        List<Object> values = new ArrayList<Object>(2);
+        values.add(delta);
+        values.add(whereValue);
+        return bind(prepared, values);
     }
 
     /**
-    * Method that executes a batch operation
+    * Method that creates the statement of a batch operation, a single batch of the endpoint batch type
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doBatchOperation(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
-        PreparedStatement preparedStatement = null;
-        String batchQuery = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_BATCH_QUERY);
-        List<Object[]> objectArrayList = (List<Object[]>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_BATCH_QUERY_LIST);
+    protected Statement createBatchOperationStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
         if (operation == CassandraOperations.batchOperation) {
-            if (batchQuery != null && objectArrayList != null) {
-                preparedStatement = session.prepare(batchQuery);
-                BatchStatement batch = new BatchStatement();
-                Iterator objectArrayIterator = objectArrayList.iterator();
-                while (objectArrayIterator.hasNext()) {
-                    Object[] objectArray = (Object[]) objectArrayIterator.next();
-                    batch.add(preparedStatement.bind(objectArray));
+            List<BoundStatement> bound = bindBatchQuery(exchange, session);
+            if (bound != null) {
+                statement = applyConsistencyLevel(new BatchStatement(endpoint.getBatchType()).addAll(bound), endpoint.getConsistencyLevel());
+            }
+        }
+        return statement;
+    }
+
+    /**
+    * Method that creates the statements of a batch operation. A logged batch stays a single atomic batch,
+    * the other batch types are split by partition key in batches of at most batchMaxStatements statements
+    * and batchMaxBytes bytes, that are executed concurrently.
+    * 
+    * @param operation
+    * @param exchange
+    * @param session
+    * @throws Exception
+    */
+    protected List<Statement> createBatchOperationStatements(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        List<Statement> statements = new ArrayList<Statement>();
+        if (operation != CassandraOperations.batchOperation) {
+            return statements;
+        }
+        if (endpoint.getBatchType() == BatchStatement.Type.LOGGED) {
+            Statement statement = createBatchOperationStatement(exchange, operation, session);
+            if (statement != null) {
+                statements.add(statement);
+            }
+            return statements;
+        }
+        List<BoundStatement> bound = bindBatchQuery(exchange, session);
+        if (bound == null) {
+            return statements;
+        }
+        ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+        CodecRegistry codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+        // statements without a routing key share the null partition
+        Map<ByteBuffer, List<BoundStatement>> partitions = new LinkedHashMap<ByteBuffer, List<BoundStatement>>();
+        for (BoundStatement statement : bound) {
+            ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+            List<BoundStatement> partition = partitions.get(routingKey);
+            if (partition == null) {
+                partition = new ArrayList<BoundStatement>();
+                partitions.put(routingKey, partition);
+            }
+            partition.add(statement);
+        }
+        for (List<BoundStatement> partition : partitions.values()) {
+            BatchStatement batch = null;
+            int bytes = 0;
+            for (BoundStatement statement : partition) {
+                int size = statement.requestSizeInBytes(protocolVersion, codecRegistry);
+                if (batch != null && (batch.size() >= endpoint.getBatchMaxStatements() || bytes + size > endpoint.getBatchMaxBytes())) {
+                    statements.add(applyConsistencyLevel(batch, endpoint.getConsistencyLevel()));
+                    batch = null;
+                }
+                if (batch == null) {
+                    batch = new BatchStatement(endpoint.getBatchType());
+                    bytes = 0;
                 }
-                applyConsistencyLevel(batch, endpoint.getConsistencyLevel());
-                result = session.execute(batch);
+                batch.add(statement);
+                bytes += size;
             }
+            statements.add(applyConsistencyLevel(batch, endpoint.getConsistencyLevel()));
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(endpoint.getResultSetFormatStrategy().getResult(result));
+        LOG.debug("Batch operation of {} statements split in {} batches", bound.size(), statements.size());
+        return statements;
+    }
+
+    /**
+     * Binds the values of the batch query list to the batch query, prepared once per query.
+     * 
+     * @param exchange
+     * @param session
+     * @throws CassandraException
+     */
+    private List<BoundStatement> bindBatchQuery(Exchange exchange, Session session) throws CassandraException {
+        final String batchQuery = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_BATCH_QUERY);
+        List<Object[]> objectArrayList = (List<Object[]>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_BATCH_QUERY_LIST);
+        if (batchQuery == null || objectArrayList == null) {
+            return null;
+        }
+        // the tables of the batch query are not known, its statement is invalidated by any schema change
+        PreparedStatement prepared = prepare(session, null, shape(CassandraOperations.batchOperation, batchQuery), new CassandraStatementCache.StatementBuilder() {
+
+            @Override
+            public RegularStatement build() {
+                return new SimpleStatement(batchQuery);
+            }
+        });
+        List<BoundStatement> bound = new ArrayList<BoundStatement>(objectArrayList.size());
+        for (Object[] objectArray : objectArrayList) {
+            bound.add(prepared.bind(objectArray));
+        }
+        return bound;
     }
     
     /**
-    * Method that create an index
+    * Method that creates the statement of a create index operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doCreateIndex(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
+    protected Statement createCreateIndexStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
         String columnName = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_INDEX_COLUMN);
         String indexName = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_INDEX_NAME);
         if (operation == CassandraOperations.createIndex) {
             if (columnName != null && indexName != null) {
             	SchemaStatement sb = SchemaBuilder.createIndex(indexName).ifNotExists().onTable(endpoint.getKeyspace(), endpoint.getTable()).andColumn(columnName);
-            	result = session.execute(sb);
+            	statement = sb;
             }
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(result);
+        return statement;
     }
    
     /**
-    * Method that create an index
+    * Method that creates the statement of a drop index operation
     * 
     * @param operation
     * @param exchange
     * @param session
     * @throws Exception
     */
-    protected void doDropIndex(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
-        ResultSet result = null;
+    protected Statement createDropIndexStatement(Exchange exchange, CassandraOperations operation, Session session) throws Exception {
+        Statement statement = null;
         String indexName = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_INDEX_NAME);
         if (operation == CassandraOperations.dropIndex) {
             if (indexName != null) {
             	SchemaStatement sb = SchemaBuilder.dropIndex(indexName);
-            	result = session.execute(sb);
+            	statement = sb;
             }
         }
-        Message responseMessage = prepareResponseMessage(exchange);
-        responseMessage.setBody(result);
+        return statement;
     }
     
-    private void appendOrderBy(Select.Where select, String orderDirection, String columnName) throws CassandraException {
-        if (columnName != null && orderDirection != null) {
-        	CassandraOperator operator = getCassandraOperator(orderDirection);
-            if (operator.equals(CassandraOperator.asc)) {
+    private void appendOrderBy(Select.Where select, CassandraOperator orderDirection, String columnName) {
+        if (orderDirection != null) {
+            if (orderDirection.equals(CassandraOperator.asc)) {
                 select.orderBy(QueryBuilder.asc((String) columnName));
             } else {
                 select.orderBy(QueryBuilder.desc((String) columnName));
@@ -689,15 +1083,205 @@ public class CassandraProducer extends DefaultProducer {
     }
     
     private void appendLimit(Select.Where select, Integer limit) {
-        if (!ObjectHelper.isEmpty(limit)) {
-        	select.limit(limit);
+        if (hasLimit(limit)) {
+        	select.limit(QueryBuilder.bindMarker());
         }
     }
     
     private void appendLimit(Select select, Integer limit) {
-        if (!ObjectHelper.isEmpty(limit)) {
-        	select.limit(limit);
+        if (hasLimit(limit)) {
+        	select.limit(QueryBuilder.bindMarker());
+        }
+    }
+
+    private boolean hasLimit(Integer limit) {
+        return !ObjectHelper.isEmpty(limit);
+    }
+
+    private void addLimitValue(List<Object> values, Integer limit) {
+        if (hasLimit(limit)) {
+            values.add(limit);
+        }
+    }
+
+    private void addWhereValue(List<Object> values, CassandraOperator operator, Object whereValue) {
+        if (operator != null) {
+            values.add(whereValue);
+        }
+    }
+
+    private void addWhereValues(List<Object> values, List<CassandraPredicate> predicates) {
+        for (CassandraPredicate predicate : predicates) {
+            values.add(predicate.getValue());
+        }
+    }
+
+    /**
+     * Returns the predicates of the where clause, in order: the list of the where predicates
+     * header when the message has one, else the predicate of the where column, operator and
+     * value headers when the message specifies both the where column and value. The elements
+     * of the list are CassandraPredicates or column, operator and value arrays.
+     * 
+     * @param exchange
+     * @throws CassandraException
+     */
+    private List<CassandraPredicate> getWherePredicates(Exchange exchange) throws CassandraException {
+        List<?> elements = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_PREDICATES, List.class);
+        if (elements != null) {
+            List<CassandraPredicate> predicates = new ArrayList<CassandraPredicate>(elements.size());
+            for (Object element : elements) {
+                if (element instanceof CassandraPredicate) {
+                    predicates.add((CassandraPredicate) element);
+                } else if (element instanceof Object[] && ((Object[]) element).length == 3) {
+                    Object[] triple = (Object[]) element;
+                    CassandraOperator operator = triple[1] instanceof CassandraOperator ? (CassandraOperator) triple[1] : getCassandraOperator(String.valueOf(triple[1]));
+                    try {
+                        predicates.add(new CassandraPredicate((String) triple[0], operator, triple[2]));
+                    } catch (IllegalArgumentException e) {
+                        throw new CassandraException(e.getMessage(), e);
+                    }
+                } else {
+                    throw new CassandraException("Where predicate not supported. Value: " + element);
+                }
+            }
+            return predicates;
+        }
+        String whereColumn = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_COLUMN);
+        Object whereValue = exchange.getIn().getHeader(CassandraConstants.CASSANDRA_WHERE_VALUE);
+        CassandraOperator operator = getWhereOperator(exchange, whereColumn, whereValue);
+        if (operator == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new CassandraPredicate(whereColumn, operator, whereValue));
+    }
+
+    /**
+     * Builds the part of the statement shape made by the columns and operators of the predicates.
+     * 
+     * @param predicates
+     */
+    private static String whereShape(List<CassandraPredicate> predicates) {
+        StringBuilder shape = new StringBuilder();
+        for (CassandraPredicate predicate : predicates) {
+            shape.append(predicate.getColumn()).append(' ').append(predicate.getOperator()).append(',');
+        }
+        return shape.toString();
+    }
+
+    /**
+     * Returns the operator of the where clause, or null when the message does not
+     * specify both the where column and value.
+     * 
+     * @param exchange
+     * @param whereColumn
+     * @param whereValue
+     * @throws CassandraException 
+     */
+    private CassandraOperator getWhereOperator(Exchange exchange, String whereColumn, Object whereValue) throws CassandraException {
+        if (whereColumn == null || whereValue == null) {
+            return null;
+        }
+        return getCassandraOperator((String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_OPERATOR));
+    }
+
+    private CassandraOperator getOrderDirection(String orderDirection, String columnName) throws CassandraException {
+        if (columnName == null || orderDirection == null) {
+            return null;
+        }
+        return getCassandraOperator(orderDirection);
+    }
+
+    /**
+     * Creates the where clause on the given column, with a bind marker in place of the value.
+     * 
+     * @param operator
+     * @param whereColumn
+     */
+    private Clause whereClause(CassandraOperator operator, String whereColumn) {
+        switch (operator) {
+        case gt:
+            return QueryBuilder.gt(whereColumn, QueryBuilder.bindMarker());
+        case gte:
+            return QueryBuilder.gte(whereColumn, QueryBuilder.bindMarker());
+        case lt:
+            return QueryBuilder.lt(whereColumn, QueryBuilder.bindMarker());
+        case lte:
+            return QueryBuilder.lte(whereColumn, QueryBuilder.bindMarker());
+        case in:
+            return QueryBuilder.in(whereColumn, QueryBuilder.bindMarker());
+        default:
+            return QueryBuilder.eq(whereColumn, QueryBuilder.bindMarker());
+        }
+    }
+
+    /**
+     * Returns the statement cached for the shape, preparing it on a cache miss.
+     * 
+     * @param session
+     * @param shape
+     * @param builder
+     * @throws CassandraException
+     */
+    private PreparedStatement prepare(Session session, String shape, CassandraStatementCache.StatementBuilder builder) throws CassandraException {
+        return prepare(session, endpoint.getTable(), shape, builder);
+    }
+
+    /**
+     * Returns the statement cached for the table and shape, preparing it on a cache miss. The
+     * table is null for plain CQL, which may work on any table.
+     * 
+     * @param session
+     * @param table
+     * @param shape
+     * @param builder
+     * @throws CassandraException
+     */
+    private PreparedStatement prepare(Session session, String table, String shape, CassandraStatementCache.StatementBuilder builder) throws CassandraException {
+        return endpoint.getStatementCache().prepare(session, table, shape, builder);
+    }
+
+    /**
+     * Returns the statement of the cql option prepared on the session cluster.
+     * 
+     * @param session
+     * @throws CassandraException
+     */
+    private PreparedStatement prepareCql(Session session) throws CassandraException {
+        return prepare(session, null, shape("cql", cqlTemplate.getTemplate()), new CassandraStatementCache.StatementBuilder() {
+
+            @Override
+            public RegularStatement build() {
+                SimpleStatement statement = new SimpleStatement(cqlTemplate.getCql());
+                if (endpoint.isIdempotent()) {
+                    statement.setIdempotent(true);
+                }
+                return statement;
+            }
+        });
+    }
+
+    private BoundStatement bind(PreparedStatement prepared, List<Object> values) throws CassandraException {
+        return bind(prepared, values.toArray());
+    }
+
+    private BoundStatement bind(PreparedStatement prepared, Object[] values) throws CassandraException {
+        BoundStatement bound = prepared.bind(values);
+        applyConsistencyLevel(bound, endpoint.getConsistencyLevel());
+        return bound;
+    }
+
+    /**
+     * Builds the cache key of a statement from the parts that change the CQL it
+     * is made of: the values bound to it are not part of the shape.
+     * 
+     * @param parts
+     */
+    private static String shape(Object... parts) {
+        StringBuilder shape = new StringBuilder();
+        for (Object part : parts) {
+            shape.append(part).append('|');
         }
+        return shape.toString();
     }
 
 	/**
@@ -710,24 +1294,11 @@ public class CassandraProducer extends DefaultProducer {
         return answer;
     }
 
-	/**
-	 * @param addr
-	 */
-    private Collection<InetAddress> getInetAddress(List<String> addr) throws UnknownHostException {
-        Collection<InetAddress> coll = new HashSet<InetAddress>();
-        Iterator it = addr.iterator();
-        while (it.hasNext()) {
-            String address = (String) it.next();
-            coll.add(InetAddress.getByName(address));
-        }
-        return coll;
-    }
-
 	/**
 	 * @param operator
 	 * @throws CassandraException 
 	 */
-    private CassandraOperator getCassandraOperator(String operator) throws CassandraException {
+    CassandraOperator getCassandraOperator(String operator) throws CassandraException {
         CassandraOperator cassOperator = null;
         switch (operator) {
         case "eq":
@@ -764,7 +1335,7 @@ public class CassandraProducer extends DefaultProducer {
 	 * @param consistencyLevelString
 	 * @throws CassandraException 
 	 */
-    private ConsistencyLevel getConsistencyLevel(String consistencyLevelString) throws CassandraException {
+    ConsistencyLevel getConsistencyLevel(String consistencyLevelString) throws CassandraException {
     	ConsistencyLevel consistencyLevel = null;
         switch (consistencyLevelString) {
         case "ONE":
@@ -806,31 +1377,27 @@ public class CassandraProducer extends DefaultProducer {
         return consistencyLevel;
     }
     
-    private Cluster buildCluster(CassandraEndpoint endpoint, Exchange exchange) throws UnknownHostException{
-        Cluster clusterBuilded;
-    	List<String> contact = (List<String>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_CONTACT_POINTS);
-        Collection<InetAddress> contactPoints = getInetAddress(contact);
-        String cassandraPort = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_PORT);
-        Cluster.Builder builder;
-        if (cassandraPort == null) {
-        	builder = Cluster.builder().addContactPoints(contactPoints);
-        } else {
-        	builder = Cluster.builder().addContactPoints(contactPoints).withPort(Integer.parseInt(cassandraPort));
-        }
-        if (!ObjectHelper.isEmpty(endpoint.getUsername()) && !ObjectHelper.isEmpty(endpoint.getPassword())){
-        	builder.withCredentials(endpoint.getUsername(), endpoint.getPassword());
-        }
-        clusterBuilded = builder.build();
-        return clusterBuilded;
-    }
-    
-    private void defineFormatStrategy(){
-    	if (!ObjectHelper.isEmpty(endpoint.getFormat())){
-    	     endpoint.setResultSetFormatStrategy(new ResultSetFormatStrategies().fromName(endpoint.getFormat()));
-    	}
+    /**
+     * Returns the session owned by the endpoint, falling back to the contact points
+     * specified on the exchange headers when no host or cluster bean is configured.
+     * 
+     * @param exchange
+     * @throws Exception
+     */
+    private Session getSession(Exchange exchange) throws Exception {
+        Session session = endpoint.getCassandraSession();
+        if (session == null) {
+            List<String> contact = (List<String>) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_CONTACT_POINTS);
+            if (ObjectHelper.isEmpty(contact)) {
+                throw new CassandraException("No host, cluster bean or contact points header specified");
+            }
+            String cassandraPort = (String) exchange.getIn().getHeader(CassandraConstants.CASSANDRA_PORT);
+            session = endpoint.getCassandraSession(contact, cassandraPort);
+        }
+        return session;
     }
     
-    private <T extends Statement> T applyConsistencyLevel(T statement, String consistencyLevelString) throws CassandraException {
+    <T extends Statement> T applyConsistencyLevel(T statement, String consistencyLevelString) throws CassandraException {
         if (consistencyLevelString != null && !ObjectHelper.isEmpty(consistencyLevelString)) {
             statement.setConsistencyLevel(getConsistencyLevel(consistencyLevelString));
         }
@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Limits the rate of the requests of an endpoint, in requests and optionally bytes per second,
+ * with token buckets allowing a burst of one second of each rate. The requests can be keyed, by
+ * tenant for instance, each key getting its own buckets: they are created on first use and,
+ * as a full bucket is the same as a new one, evicted once full again, by a sweep each time the
+ * number of keys doubles, so that the keys idle for a second do not accumulate.
+ * 
+ * The buckets are lock-free: each one only holds the time its next token is available, which a
+ * request moves forward by the cost of its tokens with a compare and set, then waits until its
+ * tokens are available. A request that would wait more than maxWait milliseconds is rejected
+ * without taking any token, and a request larger than the burst takes the whole burst. The sweep
+ * evicts a bucket with a compare and set as well, so that a request taking tokens from a bucket
+ * being evicted takes them from the bucket replacing it instead.
+ */
+class CassandraRateLimiter {
+
+    private static final Object DEFAULT_KEY = new Object();
+    private static final int MINIMUM_SWEEP_KEYS = 1024;
+
+    private final double requestsPerSecond;
+    private final double bytesPerSecond;
+    private final long maxWaitNanos;
+    private final ConcurrentMap<Object, Buckets> buckets = new ConcurrentHashMap<Object, Buckets>();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicInteger sweepKeys = new AtomicInteger(MINIMUM_SWEEP_KEYS);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    CassandraRateLimiter(double requestsPerSecond, double bytesPerSecond, long maxWait) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+    }
+
+    /**
+     * Takes the tokens of the statement, sized with the protocol version and codecs of the
+     * session when the bytes are limited, in the buckets of the key.
+     * 
+     * @param key
+     * @param session
+     * @param statement
+     * @throws CassandraException when the request would wait more than maxWait, or is interrupted
+     */
+    void acquire(Object key, Session session, Statement statement) throws CassandraException {
+        int bytes = 0;
+        if (bytesPerSecond > 0) {
+            bytes = statement.requestSizeInBytes(session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion(),
+                    session.getCluster().getConfiguration().getCodecRegistry());
+        }
+        acquire(key, bytes);
+    }
+
+    /**
+     * Takes the tokens of a request of the given size in bytes in the buckets of the key, or of
+     * the default buckets when the key is null, waiting until they are available.
+     * 
+     * @param key
+     * @param bytes
+     * @throws CassandraException when the request would wait more than maxWait, or is interrupted
+     */
+    void acquire(Object key, int bytes) throws CassandraException {
+        Object bucketsKey = key != null ? key : DEFAULT_KEY;
+        long delay;
+        while (true) {
+            Buckets keyed = buckets(bucketsKey);
+            delay = keyed.reserve(bytes, System.nanoTime(), maxWaitNanos);
+            if (delay != Bucket.EVICTED) {
+                break;
+            }
+            // the sweep is removing the buckets, the tokens are taken from the ones replacing them
+            Thread.yield();
+        }
+        if (delay == Bucket.REJECTED) {
+            reject(key);
+        }
+        if (delay > 0) {
+            throttled.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CassandraException("Interrupted while waiting for the rate limit", e);
+            }
+        }
+    }
+
+    private void reject(Object key) throws CassandraException {
+        rejections.incrementAndGet();
+        throw new CassandraException("The rate limit" + (key != null ? " of " + key : "") + " is exceeded");
+    }
+
+    private Buckets buckets(Object key) {
+        Buckets keyed = buckets.get(key);
+        if (keyed == null) {
+            Buckets created = new Buckets(requestsPerSecond > 0 ? new Bucket(requestsPerSecond) : null,
+                    bytesPerSecond > 0 ? new Bucket(bytesPerSecond) : null);
+            keyed = buckets.putIfAbsent(key, created);
+            if (keyed == null) {
+                keyed = created;
+                if (buckets.size() >= sweepKeys.get()) {
+                    sweep();
+                }
+            }
+        }
+        return keyed;
+    }
+
+    /**
+     * Evicts the buckets that are full, by one thread at a time, the next sweep waiting for the
+     * number of keys left to double. The buckets are evicted before they are removed, so that no
+     * request takes tokens from them once they are out of the map.
+     */
+    void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<Object, Buckets> entry : buckets.entrySet()) {
+                if (entry.getValue().evict(now)) {
+                    buckets.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            sweepKeys.set(Math.max(MINIMUM_SWEEP_KEYS, 2 * buckets.size()));
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Returns the number of requests that waited for their tokens.
+     */
+    long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Returns the number of requests rejected for waiting more than maxWait.
+     */
+    long getRejections() {
+        return rejections.get();
+    }
+
+    int getKeys() {
+        return buckets.size();
+    }
+
+    private static final class Buckets {
+
+        private final Bucket requests;
+        private final Bucket bytes;
+
+        private Buckets(Bucket requests, Bucket bytes) {
+            this.requests = requests;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Takes a request of the given size in bytes, returning the nanoseconds to wait for its
+         * tokens, or REJECTED or EVICTED without taking any.
+         */
+        private long reserve(int size, long now, long maxWaitNanos) {
+            long delay = 0;
+            if (requests != null) {
+                delay = requests.reserve(1, now, maxWaitNanos);
+                if (delay < 0) {
+                    return delay;
+                }
+            }
+            if (bytes != null && size > 0) {
+                long bytesDelay = bytes.reserve(size, now, maxWaitNanos);
+                if (bytesDelay < 0) {
+                    if (requests != null) {
+                        requests.cancel(1);
+                    }
+                    return bytesDelay;
+                }
+                delay = Math.max(delay, bytesDelay);
+            }
+            return delay;
+        }
+
+        /**
+         * Evicts the buckets when they are all full, the bytes bucket evicted first being given
+         * back when the requests one is not full.
+         */
+        private boolean evict(long now) {
+            if (bytes != null && !bytes.evict(now)) {
+                return false;
+            }
+            if (requests != null && !requests.evict(now)) {
+                if (bytes != null) {
+                    bytes.restore(now);
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A token bucket of the given rate per second, holding one second of tokens when full.
+     */
+    static final class Bucket {
+
+        static final long REJECTED = -1;
+        static final long EVICTED = Long.MIN_VALUE;
+
+        private final double nanosPerToken;
+        private final long burstNanos = TimeUnit.SECONDS.toNanos(1);
+        // the time the tokens taken so far are refilled by, the bucket being full once it is past
+        private final AtomicLong emptyAt = new AtomicLong(System.nanoTime());
+
+        Bucket(double tokensPerSecond) {
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+        }
+
+        /**
+         * Takes the tokens, returning the nanoseconds to wait until they are available, or
+         * REJECTED without taking them when that is more than maxWaitNanos, or EVICTED when the
+         * bucket has been evicted. More tokens than the burst cost the whole burst, so that
+         * they are taken once the bucket is full.
+         */
+        long reserve(int tokens, long now, long maxWaitNanos) {
+            long cost = cost(tokens);
+            while (true) {
+                long current = emptyAt.get();
+                if (current == EVICTED) {
+                    return EVICTED;
+                }
+                long next = Math.max(current, now) + cost;
+                long delay = next - now - burstNanos;
+                if (delay > maxWaitNanos) {
+                    return REJECTED;
+                }
+                if (emptyAt.compareAndSet(current, next)) {
+                    return Math.max(0, delay);
+                }
+            }
+        }
+
+        /**
+         * Gives back tokens taken by a request finally rejected.
+         */
+        void cancel(int tokens) {
+            long cost = cost(tokens);
+            while (true) {
+                long current = emptyAt.get();
+                if (current == EVICTED || emptyAt.compareAndSet(current, current - cost)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Evicts the bucket when it is full, the requests taking tokens from it afterwards
+         * getting EVICTED.
+         */
+        boolean evict(long now) {
+            long current = emptyAt.get();
+            return current != EVICTED && current - now <= 0 && emptyAt.compareAndSet(current, EVICTED);
+        }
+
+        /**
+         * Gives back an evicted bucket, full as it was when evicted.
+         */
+        void restore(long now) {
+            emptyAt.compareAndSet(EVICTED, now);
+        }
+
+        private long cost(int tokens) {
+            return Math.min((long) (tokens * nanosPerToken), burstNanos);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Row;
+
+/**
+ * An immutable Map view of the values of a row, for the mapList format and the Row to Map
+ * type converter. The values are decoded once, when the map is created, so the row is not
+ * retained, and the rows of a result set converted by the mapList format share the same table
+ * of the column indexes by name: each map only holds the array of its values.
+ */
+public final class CassandraRowMap extends AbstractMap<String, Object> {
+
+    private final Columns columns;
+    private final Object[] values;
+
+    CassandraRowMap(Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Decodes the values of a row on its own, with the column indexes of its definitions.
+     */
+    static CassandraRowMap of(Row row) {
+        return of(row, Columns.of(row.getColumnDefinitions()));
+    }
+
+    static CassandraRowMap of(Row row, Columns columns) {
+        Object[] values = new Object[columns.names.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.getObject(columns.positions[i]);
+        }
+        return new CassandraRowMap(columns, values);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer index = columns.indexes.get(key);
+        return index != null ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return columns.indexes.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return columns.keys;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (index >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<String, Object>(columns.names[index], values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    /**
+     * The distinct names of the columns of a result set, in the order of the columns, with the
+     * position of their column in the rows and their index in the values of a map. A name
+     * selected twice maps to its first column only, so that every key has a single entry.
+     */
+    static final class Columns {
+
+        private final String[] names;
+        private final int[] positions;
+        private final Map<String, Integer> indexes;
+        private final Set<String> keys;
+
+        Columns(String[] columnNames) {
+            Map<String, Integer> first = new LinkedHashMap<String, Integer>(columnNames.length * 2);
+            for (int i = 0; i < columnNames.length; i++) {
+                if (!first.containsKey(columnNames[i])) {
+                    first.put(columnNames[i], i);
+                }
+            }
+            this.names = first.keySet().toArray(new String[first.size()]);
+            this.positions = new int[names.length];
+            Map<String, Integer> byName = new LinkedHashMap<String, Integer>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                positions[i] = first.get(names[i]);
+                byName.put(names[i], i);
+            }
+            this.indexes = byName;
+            this.keys = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(names)));
+        }
+
+        static Columns of(ColumnDefinitions definitions) {
+            String[] names = new String[definitions.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = definitions.getName(i);
+            }
+            return new Columns(names);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+
+/**
+ * Bounded, least recently used cache of the {@link PreparedStatement}s used by
+ * {@link CassandraProducer}. Statements are keyed by the cluster they have been
+ * prepared on, the table they work on and the shape of the statement, so that
+ * messages differing only by the values they carry share the same prepared statement.
+ * The statements of plain CQL, whose tables are not known, have no table and are
+ * removed whatever the table invalidated.
+ */
+public class CassandraStatementCache {
+
+    private final int maximumSize;
+    private final Map<Key, PreparedStatement> statements;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Builds the statement to prepare on a cache miss.
+     */
+    public interface StatementBuilder {
+
+        RegularStatement build() throws CassandraException;
+
+    }
+
+    public CassandraStatementCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The prepared statement cache size must be greater than zero");
+        }
+        this.maximumSize = maximumSize;
+        this.statements = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > CassandraStatementCache.this.maximumSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the statement prepared on the session cluster for the given table and
+     * shape, preparing the statement created by the builder on a cache miss.
+     *
+     * @param session
+     * @param table the table of the statement, or null when it is not known
+     * @param shape
+     * @param builder
+     * @throws CassandraException
+     */
+    public PreparedStatement prepare(Session session, String table, String shape, StatementBuilder builder) throws CassandraException {
+        Key key = new Key(session.getCluster(), table, shape);
+        PreparedStatement prepared;
+        synchronized (statements) {
+            prepared = statements.get(key);
+        }
+        if (prepared != null) {
+            hits.incrementAndGet();
+            return prepared;
+        }
+        misses.incrementAndGet();
+        // prepared outside of the lock, concurrent misses on the same key just prepare twice
+        RegularStatement statement = builder.build();
+        prepared = session.prepare(statement);
+        // the statements bound from the prepared statement take its idempotence, which it does not
+        // take from the statement: the query builder infers it, false for counters and list appends
+        if (statement.isIdempotent() != null) {
+            prepared.setIdempotent(statement.isIdempotent());
+        }
+        synchronized (statements) {
+            statements.put(key, prepared);
+        }
+        return prepared;
+    }
+
+    /**
+     * Removes the statements working on the given table and the ones whose table is not
+     * known, or only the latter when the table is null.
+     *
+     * @param table
+     */
+    public void invalidate(String table) {
+        synchronized (statements) {
+            Iterator<Key> keys = statements.keySet().iterator();
+            while (keys.hasNext()) {
+                String cached = keys.next().table;
+                if (cached == null || cached.equalsIgnoreCase(table)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int getSize() {
+        synchronized (statements) {
+            return statements.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Key {
+
+        private final Cluster cluster;
+        private final String table;
+        private final String shape;
+
+        private Key(Cluster cluster, String table, String shape) {
+            this.cluster = cluster;
+            this.table = table;
+            this.shape = shape;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return cluster == other.cluster && shape.equals(other.shape)
+                    && (table == null ? other.table == null : table.equals(other.table));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(cluster);
+            result = 31 * result + (table == null ? 0 : table.hashCode());
+            return 31 * result + shape.hashCode();
+        }
+    }
+}
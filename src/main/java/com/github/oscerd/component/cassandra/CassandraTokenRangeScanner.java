@@ -0,0 +1,377 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+
+/**
+ * Scans a whole table for {@link CassandraConsumer}, splitting the token ring in
+ * sub-ranges scanned in parallel with token range queries. The boundaries of the
+ * sub-ranges and the token of the last partition processed entirely in each of them
+ * are stored in the offset store, so that a scan interrupted by a stop or a failure
+ * resumes from where it stopped with the same sub-ranges. The ring is split again when the topology of the
+ * cluster changes, in which case the scan starts over, and when a scan completes.
+ */
+class CassandraTokenRangeScanner implements Host.StateListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CassandraTokenRangeScanner.class);
+
+    private final CassandraConsumer consumer;
+    private final Session session;
+    private final IOffsetStore offsetStore;
+    private final String offsetKey;
+    private final ExecutorService executorService;
+    private final AtomicBoolean topologyChanged = new AtomicBoolean();
+
+    private PreparedStatement rangeStatement;
+    private PreparedStatement openRangeStatement;
+    private int tokenIndex;
+    private List<TokenRange> splits;
+
+    CassandraTokenRangeScanner(CassandraConsumer consumer, Session session, IOffsetStore offsetStore, String offsetKey, ExecutorService executorService) {
+        this.consumer = consumer;
+        this.session = session;
+        this.offsetStore = offsetStore;
+        this.offsetKey = offsetKey;
+        this.executorService = executorService;
+    }
+
+    void start() throws CassandraException {
+        CassandraEndpoint endpoint = consumer.getEndpoint();
+        Cluster cluster = session.getCluster();
+        TableMetadata table = cluster.getMetadata().getKeyspace(Metadata.quoteIfNecessary(endpoint.getKeyspace())).getTable(Metadata.quoteIfNecessary(endpoint.getTable()));
+        if (table == null) {
+            throw new CassandraException("Table " + endpoint.getTable() + " not found in keyspace " + endpoint.getKeyspace());
+        }
+        StringBuilder columns = new StringBuilder();
+        for (ColumnMetadata column : table.getColumns()) {
+            columns.append(Metadata.quoteIfNecessary(column.getName())).append(", ");
+        }
+        StringBuilder partitionKey = new StringBuilder();
+        for (ColumnMetadata column : table.getPartitionKey()) {
+            if (partitionKey.length() > 0) {
+                partitionKey.append(", ");
+            }
+            partitionKey.append(Metadata.quoteIfNecessary(column.getName()));
+        }
+        // the token is selected last, to checkpoint the progress of each sub-range
+        tokenIndex = table.getColumns().size();
+        String select = "SELECT " + columns + "token(" + partitionKey + ") FROM " + Metadata.quoteIfNecessary(table.getName())
+                + " WHERE token(" + partitionKey + ") > ?";
+        rangeStatement = session.prepare(select + " AND token(" + partitionKey + ") <= ?");
+        openRangeStatement = session.prepare(select);
+        cluster.register(this);
+    }
+
+    void stop() {
+        session.getCluster().unregister(this);
+    }
+
+    /**
+     * Scans the sub-ranges not completed yet, returning the number of exchanges processed.
+     * The checkpoints and the sub-ranges are removed once every sub-range has been scanned,
+     * so that the next scan starts from the beginning of the ring. When the scan of a sub-range
+     * fails, the others stop and are waited for before the failure is thrown.
+     */
+    int scan() throws Exception {
+        if (topologyChanged.getAndSet(false) && splits != null) {
+            List<TokenRange> previous = splits;
+            splits = storeSplits(split());
+            LOG.info("Cluster topology changed, the ring has been split again in {} ranges", splits.size());
+            removeCheckpoints(previous);
+        } else if (splits == null) {
+            splits = loadSplits();
+            if (splits == null) {
+                splits = storeSplits(split());
+            }
+        }
+        final AtomicBoolean completed = new AtomicBoolean(true);
+        final AtomicBoolean aborted = new AtomicBoolean();
+        List<Future<Integer>> scans = new ArrayList<Future<Integer>>(splits.size());
+        for (final TokenRange range : splits) {
+            scans.add(executorService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    try {
+                        return scan(range, completed, aborted);
+                    } catch (Exception e) {
+                        aborted.set(true);
+                        throw e;
+                    }
+                }
+            }));
+        }
+        int processed = 0;
+        ExecutionException failure = null;
+        // every sub-range is waited for, so that the next poll does not scan them concurrently
+        for (Future<Integer> scan : scans) {
+            try {
+                processed += scan.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (completed.get() && !topologyChanged.get() && consumer.isRunAllowed()) {
+            removeCheckpoints(splits);
+            offsetStore.removeOffset(splitsKey());
+            // the next scan splits the ring with the estimates of then
+            splits = null;
+        }
+        return processed;
+    }
+
+    /**
+     * Returns the sub-ranges of the scan in progress stored in the offset store, or null when
+     * there is none.
+     */
+    private List<TokenRange> loadSplits() throws CassandraException {
+        String stored = offsetStore.getOffset(splitsKey());
+        if (ObjectHelper.isEmpty(stored)) {
+            return null;
+        }
+        Metadata metadata = session.getCluster().getMetadata();
+        List<TokenRange> ranges = new ArrayList<TokenRange>();
+        for (String range : stored.split(";")) {
+            String[] bounds = range.split(",");
+            ranges.add(metadata.newTokenRange(metadata.newToken(bounds[0]), metadata.newToken(bounds[1])));
+        }
+        LOG.debug("Resuming the scan of {} ranges", ranges.size());
+        return ranges;
+    }
+
+    private List<TokenRange> storeSplits(List<TokenRange> ranges) throws CassandraException {
+        StringBuilder stored = new StringBuilder();
+        for (TokenRange range : ranges) {
+            if (stored.length() > 0) {
+                stored.append(';');
+            }
+            stored.append(range.getStart()).append(',').append(range.getEnd());
+        }
+        offsetStore.setOffset(splitsKey(), stored.toString());
+        return ranges;
+    }
+
+    private String splitsKey() {
+        return offsetKey + ":splits";
+    }
+
+    /**
+     * Scans a sub-range from its checkpoint, returning the number of exchanges processed.
+     * A partition may continue on the next page, so the checkpoint is the token of the last
+     * partition followed by another one: the rows of the partition a scan stopped in are read
+     * again when it resumes.
+     * The completed flag is cleared when the sub-range is not scanned to its end, which
+     * happens as well when the scan of another sub-range has failed.
+     */
+    private int scan(TokenRange range, AtomicBoolean completed, AtomicBoolean aborted) throws Exception {
+        String key = checkpointKey(range);
+        String checkpoint = offsetStore.getOffset(key);
+        Token start = checkpoint != null ? session.getCluster().getMetadata().newToken(checkpoint) : range.getStart();
+        // a sub-range ending with the minimum token runs to the end of the ring
+        boolean open = range.getEnd().compareTo(range.getStart()) <= 0;
+        if (!open && start.compareTo(range.getEnd()) >= 0) {
+            return 0;
+        }
+        BoundStatement statement = open ? openRangeStatement.bind() : rangeStatement.bind();
+        statement.setToken(0, start);
+        if (!open) {
+            statement.setToken(1, range.getEnd());
+        }
+        if (consumer.getEndpoint().getFetchSize() > 0) {
+            statement.setFetchSize(consumer.getEndpoint().getFetchSize());
+        }
+        ResultSet resultSet = execute(statement);
+        boolean rows = consumer.getEndpoint().getSplitMode() != CassandraSplitMode.page;
+        int processed = 0;
+        Token partition = null;
+        while (true) {
+            if (topologyChanged.get() || aborted.get() || !consumer.isRunAllowed()) {
+                completed.set(false);
+                return processed;
+            }
+            int available = resultSet.getAvailableWithoutFetching();
+            consumer.fetched(available);
+            if (available > 0) {
+                List<Row> page = new ArrayList<Row>(available);
+                boolean succeeded = true;
+                Token completedPartition = null;
+                for (int i = 0; i < available; i++) {
+                    Row row = resultSet.one();
+                    Token token = row.getToken(tokenIndex);
+                    if (partition != null && !token.equals(partition)) {
+                        completedPartition = partition;
+                    }
+                    partition = token;
+                    page.add(row);
+                    if (rows) {
+                        succeeded &= consumer.processResult(row);
+                        processed++;
+                    }
+                }
+                if (!rows) {
+                    succeeded = consumer.processResult(page);
+                    processed++;
+                }
+                if (!succeeded) {
+                    completed.set(false);
+                    return processed;
+                }
+                if (completedPartition != null) {
+                    offsetStore.setOffset(key, completedPartition.toString());
+                }
+            }
+            // the next page is fetched explicitly, for the rate limit to apply to every page
+            PagingState pagingState = resultSet.getExecutionInfo().getPagingState();
+            if (pagingState == null) {
+                break;
+            }
+            statement.setPagingState(pagingState);
+            resultSet = execute(statement);
+        }
+        if (!open) {
+            offsetStore.setOffset(key, range.getEnd().toString());
+        }
+        return processed;
+    }
+
+    /**
+     * Executes a page of a range query, once the rate limit of the endpoint, if any, allows it.
+     */
+    private ResultSet execute(BoundStatement statement) throws CassandraException {
+        CassandraRateLimiter rateLimiter = consumer.getEndpoint().getRateLimiter();
+        if (rateLimiter != null) {
+            rateLimiter.acquire(null, session, statement);
+        }
+        return session.execute(statement);
+    }
+
+    /**
+     * Splits the token ring in scanSplits sub-ranges: each range of the ring gets a share of
+     * the splits proportional to its estimated partitions count, as reported in system.size_estimates.
+     */
+    private List<TokenRange> split() {
+        Metadata metadata = session.getCluster().getMetadata();
+        CassandraEndpoint endpoint = consumer.getEndpoint();
+        List<TokenRange> ranges = new ArrayList<TokenRange>();
+        for (TokenRange range : metadata.getTokenRanges()) {
+            ranges.addAll(range.unwrap());
+        }
+        Map<TokenRange, Long> estimates = new HashMap<TokenRange, Long>();
+        long estimated = 0;
+        try {
+            ResultSet sizes = session.execute("SELECT range_start, range_end, partitions_count FROM system.size_estimates WHERE keyspace_name = ? AND table_name = ?",
+                    endpoint.getKeyspace(), endpoint.getTable());
+            for (Row size : sizes) {
+                Token estimateStart = metadata.newToken(size.getString("range_start"));
+                for (TokenRange range : ranges) {
+                    if (range.contains(estimateStart) && !range.getEnd().equals(estimateStart)) {
+                        Long partitions = estimates.get(range);
+                        estimates.put(range, (partitions == null ? 0 : partitions) + size.getLong("partitions_count"));
+                        estimated += size.getLong("partitions_count");
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Size estimates not available, splitting the ring evenly: {}", e.getMessage());
+        }
+        // ranges without estimates, owned by other nodes, are assumed of average size
+        long average = estimates.isEmpty() ? 1 : Math.max(1, estimated / estimates.size());
+        long total = 0;
+        for (TokenRange range : ranges) {
+            Long partitions = estimates.get(range);
+            total += partitions != null ? partitions : average;
+        }
+        List<TokenRange> result = new ArrayList<TokenRange>();
+        for (TokenRange range : ranges) {
+            Long partitions = estimates.get(range);
+            long weight = partitions != null ? partitions : average;
+            int count = (int) Math.max(1, Math.round((double) endpoint.getScanSplits() * weight / total));
+            result.addAll(count > 1 ? range.splitEvenly(count) : Collections.singletonList(range));
+        }
+        LOG.debug("Token ring split in {} ranges", result.size());
+        return result;
+    }
+
+    private void removeCheckpoints(List<TokenRange> ranges) throws CassandraException {
+        for (TokenRange range : ranges) {
+            offsetStore.removeOffset(checkpointKey(range));
+        }
+    }
+
+    private String checkpointKey(TokenRange range) {
+        return offsetKey + ":" + range.getStart() + ":" + range.getEnd();
+    }
+
+    @Override
+    public void onAdd(Host host) {
+        topologyChanged.set(true);
+    }
+
+    @Override
+    public void onRemove(Host host) {
+        topologyChanged.set(true);
+    }
+
+    @Override
+    public void onUp(Host host) {
+    }
+
+    @Override
+    public void onDown(Host host) {
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+    }
+
+    @Override
+    public void onUnregister(Cluster cluster) {
+    }
+}
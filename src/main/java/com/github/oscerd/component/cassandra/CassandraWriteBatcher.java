@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Buffers the write statements of {@link CassandraProducer} across exchanges, grouped by
+ * partition key, and executes each group as an unlogged batch when it reaches the maximum
+ * number of statements or bytes, or when the producer flushes it on its flush interval.
+ * The exchanges of a batch are completed when the batch is acknowledged.
+ */
+class CassandraWriteBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CassandraWriteBatcher.class);
+
+    private final CassandraProducer producer;
+    private final int maxStatements;
+    private final int maxBytes;
+    private final ExecutorService executorService;
+    private final Map<GroupKey, Group> groups = new HashMap<GroupKey, Group>();
+    private final Object outstandingLock = new Object();
+    // the batches executed whose exchanges are not completed yet
+    private int outstanding;
+
+    CassandraWriteBatcher(CassandraProducer producer, int maxStatements, int maxBytes, ExecutorService executorService) {
+        this.producer = producer;
+        this.maxStatements = maxStatements;
+        this.maxBytes = maxBytes;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Adds the statement to the group of its partition, returning false when the statement
+     * has no routing key and must be executed on its own.
+     * 
+     * @param session
+     * @param statement
+     * @param exchange
+     * @param callback
+     */
+    boolean add(Session session, Statement statement, Exchange exchange, AsyncCallback callback) {
+        ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+        CodecRegistry codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+        ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+        if (routingKey == null) {
+            return false;
+        }
+        int size = statement.requestSizeInBytes(protocolVersion, codecRegistry);
+        GroupKey key = new GroupKey(session, routingKey);
+        Group full = null;
+        synchronized (groups) {
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(session);
+                groups.put(key, group);
+            }
+            group.add(new Pending(statement, exchange, callback), size);
+            if (group.pending.size() >= maxStatements || group.bytes >= maxBytes) {
+                groups.remove(key);
+                full = group;
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+        return true;
+    }
+
+    /**
+     * Executes every group buffered so far.
+     */
+    void flush() {
+        List<Group> flushed;
+        synchronized (groups) {
+            if (groups.isEmpty()) {
+                return;
+            }
+            flushed = new ArrayList<Group>(groups.values());
+            groups.clear();
+        }
+        for (Group group : flushed) {
+            execute(group);
+        }
+    }
+
+    /**
+     * Waits until the exchanges of every batch executed so far are completed, or the timeout
+     * elapses, returning whether they are.
+     * 
+     * @param timeout in milliseconds
+     */
+    boolean awaitOutstanding(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (outstandingLock) {
+            while (outstanding > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(outstandingLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void completed() {
+        synchronized (outstandingLock) {
+            if (--outstanding == 0) {
+                outstandingLock.notifyAll();
+            }
+        }
+    }
+
+    private void execute(final Group group) {
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        for (Pending pending : group.pending) {
+            batch.add(pending.statement);
+        }
+        LOG.trace("Executing a batch of {} statements, {} bytes", group.pending.size(), group.bytes);
+        synchronized (outstandingLock) {
+            outstanding++;
+        }
+        for (Pending pending : group.pending) {
+            producer.executing(pending.exchange);
+        }
+        try {
+            Futures.addCallback(group.session.executeAsync(producer.applyConsistencyLevel(batch, producer.getEndpoint().getConsistencyLevel())), new FutureCallback<ResultSet>() {
+
+                @Override
+                public void onSuccess(ResultSet result) {
+                    try {
+                        for (Pending pending : group.pending) {
+                            try {
+                                producer.setResponse(pending.exchange, result, true);
+                            } catch (Exception e) {
+                                pending.exchange.setException(CassandraComponent.wrapInCamelCassandraException(e));
+                            } finally {
+                                pending.callback.done(false);
+                            }
+                        }
+                    } finally {
+                        completed();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    try {
+                        fail(group, t);
+                    } finally {
+                        completed();
+                    }
+                }
+            }, executorService);
+        } catch (Exception e) {
+            try {
+                fail(group, e);
+            } finally {
+                completed();
+            }
+        }
+    }
+
+    private static void fail(Group group, Throwable t) {
+        for (Pending pending : group.pending) {
+            pending.exchange.setException(CassandraComponent.wrapInCamelCassandraException(t));
+            pending.callback.done(false);
+        }
+    }
+
+    private static final class Pending {
+        private final Statement statement;
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+
+        private Pending(Statement statement, Exchange exchange, AsyncCallback callback) {
+            this.statement = statement;
+            this.exchange = exchange;
+            this.callback = callback;
+        }
+    }
+
+    private static final class Group {
+        private final Session session;
+        private final List<Pending> pending = new ArrayList<Pending>();
+        private int bytes;
+
+        private Group(Session session) {
+            this.session = session;
+        }
+
+        private void add(Pending statement, int size) {
+            pending.add(statement);
+            bytes += size;
+        }
+    }
+
+    /**
+     * Identifies a partition: the statements are batched per session, as the sessions opened
+     * from the contact points headers may belong to different clusters.
+     */
+    private static final class GroupKey {
+        private final Session session;
+        private final ByteBuffer routingKey;
+
+        private GroupKey(Session session, ByteBuffer routingKey) {
+            this.session = session;
+            this.routingKey = routingKey;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) obj;
+            return session == other.session && routingKey.equals(other.routingKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(session) + routingKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+/**
+ * Stores the offsets reached by {@link CassandraConsumer}, so that a restarted
+ * consumer resumes from where it stopped.
+ */
+public interface IOffsetStore {
+
+	/**
+	 * Returns the offset stored for the key, or null when there is none.
+	 */
+	String getOffset(String key) throws CassandraException;
+
+	void setOffset(String key, String offset) throws CassandraException;
+
+	void removeOffset(String key) throws CassandraException;
+
+}
@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+/**
+ * The offset stores available to {@link CassandraConsumer}.
+ */
+public class OffsetStores {
+
+    public static final String DEFAULT_OFFSET_TABLE = "camel_offsets";
+
+    public static IOffsetStore memory() {
+        return new MemoryOffsetStore();
+    }
+
+    public static IOffsetStore file(File file) {
+        return new FileOffsetStore(file);
+    }
+
+    public static IOffsetStore cassandra(Session session, String table) {
+        return new CassandraTableOffsetStore(session, table);
+    }
+
+    /**
+     * Creates the offset store with the given name (memory, file or cassandra) from
+     * the options of the endpoint.
+     *
+     * @param name
+     * @param endpoint
+     * @param session
+     */
+    public static IOffsetStore fromName(String name, CassandraEndpoint endpoint, Session session) {
+        if (name.equals("memory")) {
+            // kept by the endpoint, so that the offsets survive a restart of the consumer
+            return endpoint.getMemoryOffsetStore();
+        }
+        if (name.equals("file")) {
+            if (endpoint.getOffsetStoreFile() == null) {
+                throw new IllegalArgumentException("The parameter offsetStoreFile must be specified with the file offset store");
+            }
+            return OffsetStores.file(new File(endpoint.getOffsetStoreFile()));
+        }
+        if (name.equals("cassandra")) {
+            return OffsetStores.cassandra(session, endpoint.getOffsetTable());
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the offsets in memory: the store of an endpoint survives a restart of its route but
+     * not of the JVM.
+     */
+    static class MemoryOffsetStore implements IOffsetStore {
+
+        private final Map<String, String> offsets = new ConcurrentHashMap<String, String>();
+
+        @Override
+        public String getOffset(String key) {
+            return offsets.get(key);
+        }
+
+        @Override
+        public void setOffset(String key, String offset) {
+            offsets.put(key, offset);
+        }
+
+        @Override
+        public void removeOffset(String key) {
+            offsets.remove(key);
+        }
+    }
+
+    /**
+     * Keeps the offsets in a local properties file, rewritten on every change.
+     */
+    static class FileOffsetStore implements IOffsetStore {
+
+        private final File file;
+        private Properties offsets;
+
+        FileOffsetStore(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public synchronized String getOffset(String key) throws CassandraException {
+            return load().getProperty(key);
+        }
+
+        @Override
+        public synchronized void setOffset(String key, String offset) throws CassandraException {
+            load().setProperty(key, offset);
+            save();
+        }
+
+        @Override
+        public synchronized void removeOffset(String key) throws CassandraException {
+            if (load().remove(key) != null) {
+                save();
+            }
+        }
+
+        private Properties load() throws CassandraException {
+            if (offsets == null) {
+                Properties loaded = new Properties();
+                if (file.exists()) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        loaded.load(in);
+                    } catch (IOException e) {
+                        throw new CassandraException("Error reading offsets from file: " + file, e);
+                    }
+                }
+                offsets = loaded;
+            }
+            return offsets;
+        }
+
+        private void save() throws CassandraException {
+            File parent = file.getAbsoluteFile().getParentFile();
+            try {
+                if (parent != null) {
+                    Files.createDirectories(parent.toPath());
+                }
+                // written aside and moved, so a crash never leaves a truncated file
+                File temp = new File(parent, file.getName() + ".tmp");
+                try (OutputStream out = new FileOutputStream(temp)) {
+                    offsets.store(out, "camel-cassandra offsets");
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new CassandraException("Error writing offsets to file: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Keeps the offsets in a table of the endpoint keyspace, created when missing.
+     */
+    static class CassandraTableOffsetStore implements IOffsetStore {
+
+        private final Session session;
+        private final String table;
+        private PreparedStatement select;
+        private PreparedStatement insert;
+        private PreparedStatement delete;
+
+        CassandraTableOffsetStore(Session session, String table) {
+            this.session = session;
+            this.table = table;
+        }
+
+        @Override
+        public String getOffset(String key) throws CassandraException {
+            init();
+            try {
+                Row row = session.execute(select.bind(key)).one();
+                return row != null ? row.getString(0) : null;
+            } catch (Exception e) {
+                throw new CassandraException("Error reading offset " + key + " from table " + table, e);
+            }
+        }
+
+        @Override
+        public void setOffset(String key, String offset) throws CassandraException {
+            init();
+            try {
+                session.execute(insert.bind(key, offset));
+            } catch (Exception e) {
+                throw new CassandraException("Error writing offset " + key + " to table " + table, e);
+            }
+        }
+
+        @Override
+        public void removeOffset(String key) throws CassandraException {
+            init();
+            try {
+                session.execute(delete.bind(key));
+            } catch (Exception e) {
+                throw new CassandraException("Error removing offset " + key + " from table " + table, e);
+            }
+        }
+
+        private synchronized void init() throws CassandraException {
+            if (select == null) {
+                try {
+                    session.execute("CREATE TABLE IF NOT EXISTS " + table + " (offset_key text PRIMARY KEY, offset_value text)");
+                    select = session.prepare("SELECT offset_value FROM " + table + " WHERE offset_key = ?");
+                    insert = session.prepare("INSERT INTO " + table + " (offset_key, offset_value) VALUES (?, ?)");
+                    delete = session.prepare("DELETE FROM " + table + " WHERE offset_key = ?");
+                } catch (Exception e) {
+                    throw new CassandraException("Error initializing offset table " + table, e);
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,15 @@ package com.github.oscerd.component.cassandra;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.StreamSupport;
+
+import org.apache.camel.spi.ClassResolver;
+import org.apache.camel.util.ObjectHelper;
 
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
@@ -33,18 +42,239 @@ public class ResultSetFormatStrategies {
     public static IResultSetFormatStrategy rowsList() {
         return rowsList;
     }
+
+    /**
+     * Copies the rows in a List, failing when the result has more than maxRows rows.
+     */
+    public static IResultSetFormatStrategy rowsList(final int maxRows) {
+        if (maxRows <= 0) {
+            return rowsList;
+        }
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                List<Row> rows = new ArrayList<Row>(resultSet.getAvailableWithoutFetching());
+                Iterator<Row> rowIter = new RowIterator(resultSet, maxRows);
+                while (rowIter.hasNext()) {
+                    rows.add(rowIter.next());
+                }
+                return rows;
+            }
+        };
+    }
     
     public static IResultSetFormatStrategy normalResultSet() {
         return normalResultSet;
     }
+
+    /**
+     * Returns the rows as a lazy Iterator, which fetches the next page of the result set only
+     * when the iteration reaches it, and fails past maxRows rows when maxRows is greater than zero.
+     */
+    public static IResultSetFormatStrategy iterator(final int maxRows) {
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                return new RowIterator(resultSet, maxRows);
+            }
+        };
+    }
+
+    /**
+     * Returns the rows as a lazy Iterable, like {@link #iterator(int)}: it can be iterated once.
+     */
+    public static IResultSetFormatStrategy iterable(final int maxRows) {
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(final ResultSet resultSet) {
+                final AtomicBoolean iterated = new AtomicBoolean();
+                return new Iterable<Row>() {
+
+                    @Override
+                    public Iterator<Row> iterator() {
+                        if (!iterated.compareAndSet(false, true)) {
+                            throw new IllegalStateException("The rows of a result set can only be iterated once");
+                        }
+                        return new RowIterator(resultSet, maxRows);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the rows as a lazy sequential Stream, like {@link #iterator(int)}.
+     */
+    public static IResultSetFormatStrategy stream(final int maxRows) {
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new RowIterator(resultSet, maxRows),
+                        Spliterator.ORDERED | Spliterator.NONNULL), false);
+            }
+        };
+    }
+
+
+    /**
+     * Maps the rows to instances of the bean class in a List, failing when the result has more
+     * than maxRows rows when maxRows is greater than zero.
+     */
+    public static <T> IResultSetFormatStrategy bean(Class<T> type, final int maxRows) {
+        final CassandraBeanMapper<T> mapper = new CassandraBeanMapper<T>(type);
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                CassandraBeanMapper<T>.Mapping mapping = mapper.mapping(resultSet.getColumnDefinitions());
+                List<T> beans = new ArrayList<T>(resultSet.getAvailableWithoutFetching());
+                Iterator<Row> rowIter = new RowIterator(resultSet, maxRows);
+                while (rowIter.hasNext()) {
+                    beans.add(mapping.map(rowIter.next()));
+                }
+                return beans;
+            }
+        };
+    }
+
+
+    /**
+     * Decodes the rows in the column vectors of a {@link CassandraColumns}, failing when the
+     * result has more than maxRows rows when maxRows is greater than zero.
+     */
+    public static IResultSetFormatStrategy columnar(final int maxRows) {
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                return CassandraColumns.decode(resultSet, new RowIterator(resultSet, maxRows));
+            }
+        };
+    }
+	
+    /**
+     * Copies the values of the rows in a List of immutable {@link CassandraRowMap}, which share
+     * the column index of the result set, failing when the result has more than maxRows rows
+     * when maxRows is greater than zero.
+     */
+    public static IResultSetFormatStrategy mapList(final int maxRows) {
+        return new IResultSetFormatStrategy() {
+
+            @Override
+            public Object getResult(ResultSet resultSet) {
+                CassandraRowMap.Columns columns = CassandraRowMap.Columns.of(resultSet.getColumnDefinitions());
+                List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(resultSet.getAvailableWithoutFetching());
+                Iterator<Row> rowIter = new RowIterator(resultSet, maxRows);
+                while (rowIter.hasNext()) {
+                    maps.add(CassandraRowMap.of(rowIter.next(), columns));
+                }
+                return maps;
+            }
+        };
+    }
 	
     public static IResultSetFormatStrategy fromName(String name) {
+        return fromName(name, 0);
+    }
+
+    /**
+     * Returns the format strategy with the given name, bean:className mapping the rows to the
+     * class. The rowsList, iterator, iterable, stream, bean, columnar and mapList formats read at most maxRows rows
+     * when maxRows is greater than zero.
+     * 
+     * @param name
+     * @param maxRows
+     */
+    public static IResultSetFormatStrategy fromName(String name, int maxRows) {
+        return fromName(name, maxRows, null);
+    }
+
+    /**
+     * Returns the format strategy with the given name, the class of bean:className being resolved
+     * with the class resolver of the Camel context when there is one, so that it is found in the
+     * bundle of the route under OSGi.
+     * 
+     * @param name
+     * @param maxRows
+     * @param classResolver
+     * @throws IllegalArgumentException when the class of a bean format is not found
+     */
+    public static IResultSetFormatStrategy fromName(String name, int maxRows, ClassResolver classResolver) {
         if (name.equals("normalResultSet")) {
         	return ResultSetFormatStrategies.normalResultSet();
         }
         if (name.equals("rowsList")) {
-            return ResultSetFormatStrategies.rowsList();
+            return ResultSetFormatStrategies.rowsList(maxRows);
+        }
+        if (name.equals("iterator")) {
+            return ResultSetFormatStrategies.iterator(maxRows);
+        }
+        if (name.equals("iterable")) {
+            return ResultSetFormatStrategies.iterable(maxRows);
+        }
+        if (name.equals("stream")) {
+            return ResultSetFormatStrategies.stream(maxRows);
+        }
+        if (name.equals("columnar")) {
+            return ResultSetFormatStrategies.columnar(maxRows);
+        }
+        if (name.equals("mapList")) {
+            return ResultSetFormatStrategies.mapList(maxRows);
+        }
+        if (name.startsWith("bean:")) {
+            Class<?> type;
+            if (classResolver != null) {
+                try {
+                    type = classResolver.resolveMandatoryClass(name.substring(5));
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalArgumentException("Bean class not found. Value: " + name.substring(5), e);
+                }
+            } else {
+                type = ObjectHelper.loadClass(name.substring(5));
+            }
+            if (type == null) {
+                throw new IllegalArgumentException("Bean class not found. Value: " + name.substring(5));
+            }
+            return ResultSetFormatStrategies.bean(type, maxRows);
         }
 		return null;
     }
+
+    /**
+     * Iterates the rows of a result set, the driver fetching the next page when the current
+     * one is exhausted.
+     */
+    private static final class RowIterator implements Iterator<Row> {
+
+        private final ResultSet resultSet;
+        private final int maxRows;
+        private int read;
+
+        RowIterator(ResultSet resultSet, int maxRows) {
+            this.resultSet = resultSet;
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean more = !resultSet.isExhausted();
+            if (more && maxRows > 0 && read >= maxRows) {
+                throw new IllegalStateException("The result has more rows than maxRows: " + maxRows);
+            }
+            return more;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            read++;
+            return resultSet.one();
+        }
+    }
 }
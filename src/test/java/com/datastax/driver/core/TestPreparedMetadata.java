@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * Gives the tests the metadata of a prepared statement without variables, whose constructors
+ * are only reachable from the driver package: a bound statement reads it from its prepared
+ * statement.
+ */
+public final class TestPreparedMetadata {
+
+    private static final MD5Digest ID = MD5Digest.wrap(new byte[16]);
+
+    private TestPreparedMetadata() {
+    }
+
+    public static ColumnDefinitions variables() {
+        return ColumnDefinitions.EMPTY;
+    }
+
+    public static PreparedId preparedId() {
+        return new PreparedId(new PreparedId.PreparedMetadata(ID, ColumnDefinitions.EMPTY),
+                new PreparedId.PreparedMetadata(ID, ColumnDefinitions.EMPTY), new int[0], ProtocolVersion.V4);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import org.apache.camel.builder.RouteBuilder;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.Test;
+
+public class CassandraBatchWritesTest extends CassandraBaseTest {
+
+    @Test
+    public void testBatchWritesOfOnePartition() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:result");
+        mock.expectedMessageCount(10);
+        List<Future<Object>> replies = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> headers = new HashMap<String, Object>();
+            HashMap<String, Object> insert = new HashMap<String, Object>();
+            insert.put("id", 7);
+            insert.put("album", "Load");
+            insert.put("title", "Track " + i);
+            insert.put("artist", "Metallica");
+            headers.put(CassandraConstants.CASSANDRA_INSERT_OBJECT, insert);
+            replies.add(template.asyncRequestBodyAndHeaders("direct:in", "", headers));
+        }
+        for (Future<Object> reply : replies) {
+            reply.get();
+        }
+        assertMockEndpointsSatisfied();
+
+        Cluster cluster = Cluster.builder().addContactPoint("127.0.0.1").build();
+        try {
+            Session session = cluster.connect("simplex");
+            Row row = session.execute("select artist from songs where id = 7").one();
+            assertEquals("Metallica", row.getString("artist"));
+        } finally {
+            cluster.close();
+        }
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cluster?host=127.0.0.1&port=9042&keyspace=simplex&table=songs&operation=insert&batchWrites=true&batchMaxStatements=5&batchFlushInterval=50")
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TestHosts;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LatencyAwarePolicy;
+import com.datastax.driver.core.policies.LoggingRetryPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+
+/**
+ * Checks that the options of the endpoint URI reach the configuration of the cluster it builds,
+ * and that the metrics of the endpoint register the gauges of the pools of its session.
+ */
+public class CassandraClusterConfigurationTest {
+
+    private static final String URI = "cassandra:cassandraConnection?host=127.0.0.1&keyspace=simplex&table=songs&operation=selectAll";
+
+    @Test
+    public void testPolicies() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        CassandraEndpoint endpoint = context.getEndpoint(URI + "&localDc=dc1&usedHostsPerRemoteDc=2&latencyAware=true&shuffleReplicas=false"
+                + "&retryPolicy=downgradingConsistency&logRetries=true&speculativeExecution=constant", CassandraEndpoint.class);
+        Configuration configuration = endpoint.createClusterBuilder().getConfiguration();
+        assertTrue(configuration.getPolicies().getLoadBalancingPolicy() instanceof TokenAwarePolicy);
+        TokenAwarePolicy tokenAware = (TokenAwarePolicy) configuration.getPolicies().getLoadBalancingPolicy();
+        assertTrue(tokenAware.getChildPolicy() instanceof LatencyAwarePolicy);
+        assertTrue(((LatencyAwarePolicy) tokenAware.getChildPolicy()).getChildPolicy() instanceof DCAwareRoundRobinPolicy);
+        assertTrue(configuration.getPolicies().getRetryPolicy() instanceof LoggingRetryPolicy);
+        assertTrue(configuration.getPolicies().getSpeculativeExecutionPolicy() instanceof ConstantSpeculativeExecutionPolicy);
+    }
+
+    @Test
+    public void testDefaultLoadBalancing() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        CassandraEndpoint endpoint = context.getEndpoint(URI + "&tokenAware=false", CassandraEndpoint.class);
+        Configuration configuration = endpoint.createClusterBuilder().getConfiguration();
+        assertSame(DCAwareRoundRobinPolicy.class, configuration.getPolicies().getLoadBalancingPolicy().getClass());
+        assertEquals(endpoint.getReadTimeout(), configuration.getSocketOptions().getReadTimeoutMillis());
+    }
+
+    @Test
+    public void testPoolingOptions() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        CassandraEndpoint endpoint = context.getEndpoint(URI + "&coreConnectionsPerHost=2&maxConnectionsPerHost=4&maxRequestsPerConnection=2048"
+                + "&poolTimeout=250&maxQueueSize=64&heartbeatInterval=15", CassandraEndpoint.class);
+        PoolingOptions pooling = endpoint.createClusterBuilder().getConfiguration().getPoolingOptions();
+        assertEquals(2, pooling.getCoreConnectionsPerHost(HostDistance.LOCAL));
+        assertEquals(4, pooling.getMaxConnectionsPerHost(HostDistance.LOCAL));
+        assertEquals(2048, pooling.getMaxRequestsPerConnection(HostDistance.LOCAL));
+        assertEquals(250, pooling.getPoolTimeoutMillis());
+        assertEquals(64, pooling.getMaxQueueSize());
+        assertEquals(15, pooling.getHeartbeatIntervalSeconds());
+    }
+
+    @Test
+    public void testPoolGauges() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        CassandraEndpoint endpoint = context.getEndpoint(URI, CassandraEndpoint.class);
+        final Cluster cluster = endpoint.createClusterBuilder().addContactPoint("127.0.0.1").build();
+        final Host host = TestHosts.host(cluster, "127.0.0.1", "dc1");
+        final Session.State state = (Session.State) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.State.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getConnectedHosts")) {
+                    return Collections.singletonList(host);
+                }
+                if (method.getName().equals("getOpenConnections")) {
+                    return 2;
+                }
+                return 0;
+            }
+        });
+        Session session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getCluster")) {
+                    return cluster;
+                }
+                if (method.getName().equals("getState")) {
+                    return state;
+                }
+                return null;
+            }
+        });
+        CassandraMetrics metrics = new CassandraMetrics("cassandra://pool");
+        try {
+            metrics.start(session, new CassandraStatementCache(10));
+            @SuppressWarnings("rawtypes")
+            Gauge openConnections = metrics.getRegistry().getGauges().get("hosts.dc1.127.0.0.1.pool.openConnections");
+            assertEquals(2, openConnections.getValue());
+            assertTrue(metrics.getRegistry().getGauges().containsKey("hosts.dc1.127.0.0.1.pool.trashedConnections"));
+            assertTrue(metrics.getRegistry().getGauges().containsKey("hosts.dc1.127.0.0.1.pool.inFlight"));
+            assertTrue(metrics.getRegistry().getGauges().containsKey("hosts.dc1.127.0.0.1.pool.saturation"));
+        } finally {
+            metrics.stop();
+            cluster.close();
+        }
+    }
+}
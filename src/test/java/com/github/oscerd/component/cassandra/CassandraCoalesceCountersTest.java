@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseCounterTest;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.Test;
+
+public class CassandraCoalesceCountersTest extends CassandraBaseCounterTest {
+
+    @Test
+    public void testCoalesceCounters() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:result");
+        mock.expectedMessageCount(12);
+        for (int i = 0; i < 12; i++) {
+            Map<String, Object> headers = new HashMap<String, Object>();
+            headers.put(CassandraConstants.CASSANDRA_OPERATION_HEADER, i < 10 ? "incrCounter" : "decrCounter");
+            headers.put(CassandraConstants.CASSANDRA_COUNTER_COLUMN, "like");
+            headers.put(CassandraConstants.CASSANDRA_COUNTER_VALUE, 1L);
+            headers.put(CassandraConstants.CASSANDRA_WHERE_COLUMN, "id");
+            headers.put(CassandraConstants.CASSANDRA_WHERE_VALUE, 1);
+            headers.put(CassandraConstants.CASSANDRA_OPERATOR, "eq");
+            template.sendBodyAndHeaders("direct:in", "", headers);
+        }
+        assertMockEndpointsSatisfied();
+        for (Exchange exchange : mock.getReceivedExchanges()) {
+            assertEquals(Boolean.TRUE, exchange.getIn().getHeader(CassandraConstants.CASSANDRA_COUNTER_ACCEPTED));
+        }
+        // stopping the producer writes the coalesced deltas
+        context.stop();
+
+        Cluster cluster = Cluster.builder().addContactPoint("127.0.0.1").build();
+        try {
+            Session session = cluster.connect("simplex");
+            Row row = session.execute(QueryBuilder.select().all().from("counter").where(QueryBuilder.eq("id", 1))).one();
+            assertEquals(9, row.getLong("like"));
+        } finally {
+            cluster.close();
+        }
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cluster?host=127.0.0.1&port=9042&keyspace=simplex&table=counter&coalesceCounters=true&counterFlushInterval=60000")
+                    .to("mock:result");
+            }
+        };
+    }
+}
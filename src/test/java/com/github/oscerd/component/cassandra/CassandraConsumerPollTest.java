@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TestPreparedMetadata;
+
+/**
+ * Checks that the consumer prepares its polling query once, on the session of the endpoint,
+ * and binds that prepared statement at every poll.
+ */
+public class CassandraConsumerPollTest {
+
+    private Session session;
+    private final List<String> prepared = new ArrayList<String>();
+    private final List<BoundStatement> executed = new ArrayList<BoundStatement>();
+    private final List<Session> executedOn = new ArrayList<Session>();
+
+    @Before
+    public void setUp() {
+        session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("prepare")) {
+                    prepared.add((String) args[0]);
+                    return preparedStatement();
+                }
+                if (method.getName().equals("execute")) {
+                    executed.add((BoundStatement) args[0]);
+                    executedOn.add((Session) proxy);
+                    return resultSet();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testSecondPollReusesPreparedStatementAndSession() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        CassandraComponent component = new CassandraComponent();
+        component.setCamelContext(context);
+        CassandraEndpoint endpoint = new CassandraEndpoint("cassandra:cluster", component, "cluster") {
+            @Override
+            public Session getCassandraSession() {
+                return session;
+            }
+        };
+        endpoint.setCamelContext(context);
+        endpoint.setKeyspace("simplex");
+        endpoint.setPollingQuery("select * from songs");
+        final List<Object> bodies = new ArrayList<Object>();
+        CassandraConsumer consumer = new CassandraConsumer(endpoint, new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                bodies.add(exchange.getIn().getBody());
+            }
+        });
+        consumer.setStartScheduler(false);
+        consumer.start();
+        try {
+            consumer.poll();
+            consumer.poll();
+        } finally {
+            consumer.stop();
+        }
+        assertEquals(1, prepared.size());
+        assertEquals("select * from songs", prepared.get(0));
+        assertEquals(2, executed.size());
+        assertSame(executed.get(0).preparedStatement(), executed.get(1).preparedStatement());
+        assertSame(session, executedOn.get(0));
+        assertSame(session, executedOn.get(1));
+        assertEquals(2, bodies.size());
+    }
+
+    private PreparedStatement preparedStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getVariables")) {
+                    return TestPreparedMetadata.variables();
+                }
+                if (method.getName().equals("getPreparedId")) {
+                    return TestPreparedMetadata.preparedId();
+                }
+                if (method.getName().equals("bind")) {
+                    return new BoundStatement((PreparedStatement) proxy);
+                }
+                return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        });
+    }
+
+    private ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getReturnType() == int.class) {
+                    return 0;
+                }
+                return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+            }
+        });
+    }
+}
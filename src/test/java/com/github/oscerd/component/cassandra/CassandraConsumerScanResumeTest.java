@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.datastax.driver.core.Row;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import com.github.oscerd.component.cassandra.embedded.CassandraPlaylistBaseTest;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.junit.Test;
+
+public class CassandraConsumerScanResumeTest extends CassandraPlaylistBaseTest {
+
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final List<String> checkpoints = new ArrayList<String>();
+
+    @Test
+    public void testResumeInsidePartition() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:result");
+        // the playlist partition has 3 rows, read in pages of 2: the third row fails once,
+        // after the first page has been processed, and the scan resumes in the next poll
+        mock.expectedMinimumMessageCount(5);
+        assertMockEndpointsSatisfied();
+        assertTrue(failed.get());
+        // the partition continued on the second page, so the first page stored no checkpoint
+        assertTrue(checkpoints.isEmpty());
+        Set<Integer> songs = new HashSet<Integer>();
+        for (Exchange exchange : mock.getReceivedExchanges()) {
+            songs.add(((Row) exchange.getIn().getBody()).getInt("song_order"));
+        }
+        assertTrue(songs.contains(3));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+        final IOffsetStore memory = OffsetStores.memory();
+        registry.bind("offsets", new IOffsetStore() {
+
+            @Override
+            public String getOffset(String key) throws CassandraException {
+                return memory.getOffset(key);
+            }
+
+            @Override
+            public void setOffset(String key, String offset) throws CassandraException {
+                if (!key.endsWith(":splits") && !failed.get()) {
+                    checkpoints.add(offset);
+                }
+                memory.setOffset(key, offset);
+            }
+
+            @Override
+            public void removeOffset(String key) throws CassandraException {
+                memory.removeOffset(key);
+            }
+        });
+        return registry;
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("cassandra:cluster?host=127.0.0.1&port=9042&keyspace=simplex&table=playlists&scan=true&scanSplits=1&fetchSize=2&splitMode=row&offsetStoreInstance=#offsets")
+                    .process(new Processor() {
+                        @Override
+                        public void process(Exchange exchange) throws Exception {
+                            if (((Row) exchange.getIn().getBody()).getInt("song_order") == 3 && failed.compareAndSet(false, true)) {
+                                throw new IllegalStateException("Failing the last row of the partition once");
+                            }
+                        }
+                    })
+                    .to("mock:result");
+            }
+        };
+    }
+}
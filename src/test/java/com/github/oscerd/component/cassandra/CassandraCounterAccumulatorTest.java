@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+
+public class CassandraCounterAccumulatorTest {
+
+    @Test
+    public void testThresholdRequestsOneFlush() {
+        CassandraCounterAccumulator accumulator = new CassandraCounterAccumulator(null, 100, 2);
+        assertFalse(accumulator.add(null, "counters", "like", "id", 1, 1));
+        assertTrue(accumulator.add(null, "counters", "like", "id", 1, 1));
+        // the flush requested is not run yet, the next exchanges do not request another one
+        assertFalse(accumulator.add(null, "counters", "like", "id", 1, 1));
+        assertFalse(accumulator.add(null, "counters", "like", "id", 2, 1));
+    }
+
+    @Test
+    public void testFlushesRacingAddsWriteEveryDelta() throws Exception {
+        final AtomicLong written = new AtomicLong();
+        final CassandraCounterAccumulator accumulator = new CassandraCounterAccumulator(null, 100, Long.MAX_VALUE) {
+
+            @Override
+            Statement createStatement(CounterKey key, long sum) {
+                written.addAndGet(sum);
+                return new SimpleStatement("UPDATE counters SET like = like + ? WHERE id = ?", sum, key);
+            }
+
+            @Override
+            void execute(Session session, BatchStatement batch) {
+                // the sums are counted when their statements are created
+            }
+        };
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        Thread flusher = new Thread() {
+
+            @Override
+            public void run() {
+                while (adding.get()) {
+                    accumulator.flush();
+                }
+            }
+        };
+        flusher.start();
+        List<Thread> adders = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread adder = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 200000; i++) {
+                        accumulator.add(null, "counters", "like", "id", i % 2, 1);
+                    }
+                }
+            };
+            adders.add(adder);
+            adder.start();
+        }
+        for (Thread adder : adders) {
+            adder.join();
+        }
+        adding.set(false);
+        flusher.join();
+        accumulator.flush();
+        assertEquals(800000, written.get());
+    }
+}
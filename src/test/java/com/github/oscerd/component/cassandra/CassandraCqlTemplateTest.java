@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.Test;
+
+public class CassandraCqlTemplateTest {
+
+    private final DefaultCamelContext context = new DefaultCamelContext();
+
+    @Test
+    public void testNamedMarkersArePositional() {
+        CassandraCqlTemplate template = new CassandraCqlTemplate(
+                "SELECT * FROM songs WHERE album = :album AND title = 'a:b' AND id IN (:id, :id) -- :comment\n LIMIT :limit", context);
+        assertEquals("SELECT * FROM songs WHERE album = ? AND title = 'a:b' AND id IN (?, ?) -- :comment\n LIMIT ?", template.getCql());
+    }
+
+    @Test
+    public void testMapLiteralsAreNotMarkers() {
+        CassandraCqlTemplate template = new CassandraCqlTemplate("UPDATE customers SET home = {street: :street, zip_code:10000} WHERE id = :id", context);
+        assertEquals("UPDATE customers SET home = {street: ?, zip_code:10000} WHERE id = ?", template.getCql());
+    }
+
+    @Test
+    public void testValuesFromHeaderBodyAndExpressions() throws Exception {
+        CassandraCqlTemplate template = new CassandraCqlTemplate("INSERT INTO songs (id, title, album) VALUES (:id, :title, :#${header.album})", context);
+        assertEquals("INSERT INTO songs (id, title, album) VALUES (?, ?, ?)", template.getCql());
+
+        Exchange exchange = new DefaultExchange(context);
+        Map<String, Object> body = new HashMap<String, Object>();
+        body.put("id", 1);
+        body.put("title", "Body title");
+        exchange.getIn().setBody(body);
+        exchange.getIn().setHeader(CassandraConstants.CASSANDRA_CQL_PARAMETERS, Collections.singletonMap("title", "Header title"));
+        exchange.getIn().setHeader("album", "The gathering");
+        assertArrayEquals(new Object[] {1, "Header title", "The gathering"}, template.values(exchange));
+    }
+
+    @Test(expected = CassandraException.class)
+    public void testMissingValue() throws Exception {
+        new CassandraCqlTemplate("SELECT * FROM songs WHERE id = :id", context).values(new DefaultExchange(context));
+    }
+
+    @Test
+    public void testPositionalMarkersRejected() {
+        try {
+            new CassandraCqlTemplate("SELECT * FROM songs WHERE id = ?", context);
+            fail("Positional markers are not supported");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The cql option takes named markers, not positional ones. Value: SELECT * FROM songs WHERE id = ?", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+
+public class CassandraCqlTest extends CassandraBaseTest {
+
+    @Test
+    public void testCqlBoundFromMapBody() throws Exception {
+        Map<String, Object> song = new HashMap<String, Object>();
+        song.put("id", 7);
+        song.put("title", "Forgotten sunrise");
+        song.put("album", "Mandylion");
+        template.requestBody("direct:insert", song);
+
+        List<Row> result = (List<Row>) template.requestBodyAndHeader("direct:select", null, "songId", 7);
+        assertEquals(1, result.size());
+        assertEquals("Forgotten sunrise", result.get(0).getString("title"));
+    }
+
+    @Test
+    public void testCqlBoundFromParametersHeader() throws Exception {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("album", "The gathering");
+        List<Row> result = (List<Row>) template.requestBodyAndHeader("direct:album", null, CassandraConstants.CASSANDRA_CQL_PARAMETERS, parameters);
+        assertFalse(result.isEmpty());
+        for (Row row : result) {
+            assertEquals("The gathering", row.getString("album"));
+        }
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:insert")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&cql=INSERT INTO songs (id, title, album) VALUES (:id, :title, :album)");
+                from("direct:select")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&format=rowsList&cql=SELECT * FROM songs WHERE id = :#${header.songId}");
+                from("direct:album")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&format=rowsList&cql=SELECT * FROM songs WHERE album = :album");
+            }
+        };
+    }
+}
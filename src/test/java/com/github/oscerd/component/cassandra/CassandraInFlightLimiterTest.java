@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+
+public class CassandraInFlightLimiterTest {
+
+    @Test
+    public void testFailFastRejectsOverLimit() throws Exception {
+        CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(2, CassandraInFlightPolicy.failFast, 0);
+        limiter.acquire();
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+        try {
+            limiter.acquire();
+            fail("The third request should be rejected");
+        } catch (CassandraException e) {
+            assertEquals(1, limiter.getRejections());
+        }
+        limiter.release();
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejections());
+    }
+
+    @Test
+    public void testWaitRejectsAfterTimeout() throws Exception {
+        CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(1, CassandraInFlightPolicy.wait, 50);
+        limiter.acquire();
+        long start = System.nanoTime();
+        try {
+            limiter.acquire();
+            fail("The second request should be rejected");
+        } catch (CassandraException e) {
+            assertTrue(System.nanoTime() - start >= 50 * 1000000L);
+            assertEquals(1, limiter.getRejections());
+        }
+    }
+
+    @Test
+    public void testBlockWaitsForRelease() throws Exception {
+        final CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(1, CassandraInFlightPolicy.block, 0);
+        limiter.acquire();
+        Thread releaser = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                limiter.release();
+            }
+        });
+        releaser.start();
+        limiter.acquire();
+        releaser.join();
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getRejections());
+    }
+
+    @Test
+    public void testAdaptiveLimitIncreasesUnderThreshold() throws Exception {
+        CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(1, 3, CassandraInFlightPolicy.failFast, 0, true, 100, 0.5);
+        assertEquals(1, limiter.getLimit());
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        assertEquals(2, limiter.getLimit());
+        limiter.acquire();
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        // an idle limiter does not grow over its maximum
+        limiter.acquire();
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testAdaptiveLimitDecreasesOnLatencyAndOverload() throws Exception {
+        CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(2, 8, CassandraInFlightPolicy.failFast, 0, true, 100, 0.5);
+        // saturated, the limit grows up to its maximum
+        for (int i = 0; i < 4; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                limiter.acquire();
+            }
+            for (int j = 0; j < limit; j++) {
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+            }
+        }
+        assertEquals(8, limiter.getLimit());
+        // a burst of slow requests sent under the old limit decreases it once
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 3; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(500), null);
+        }
+        assertEquals(4, limiter.getLimit());
+        // a request sent after the decrease decreases it again
+        Thread.sleep(20);
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), new CassandraException(new OperationTimedOutException(null)));
+        assertEquals(2, limiter.getLimit());
+        Thread.sleep(20);
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), new CassandraException(new OperationTimedOutException(null)));
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testRequestNotSentDoesNotAdjust() throws Exception {
+        CassandraInFlightLimiter limiter = new CassandraInFlightLimiter(1, 4, CassandraInFlightPolicy.failFast, 0, true, 100, 0.5);
+        limiter.acquire();
+        limiter.release(-1, null);
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testOverloadFailures() {
+        assertTrue(CassandraInFlightLimiter.isOverload(new CassandraException(new OperationTimedOutException(null))));
+        assertFalse(CassandraInFlightLimiter.isOverload(new CassandraException(new InvalidQueryException("unconfigured table"))));
+        assertFalse(CassandraInFlightLimiter.isOverload(null));
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+
+public class CassandraLazyFormatTest {
+
+    @Test
+    public void testIteratorFetchesPagesOnDemand() {
+        PagedResultSet paged = new PagedResultSet(3, 4);
+        Iterator<Row> rows = (Iterator<Row>) ResultSetFormatStrategies.iterator(0).getResult(paged.resultSet);
+        assertEquals(1, paged.fetched);
+        for (int i = 0; i < 4; i++) {
+            rows.next();
+        }
+        assertEquals(1, paged.fetched);
+        rows.next();
+        assertEquals(2, paged.fetched);
+        int count = 5;
+        while (rows.hasNext()) {
+            rows.next();
+            count++;
+        }
+        assertEquals(12, count);
+        assertEquals(3, paged.fetched);
+    }
+
+    @Test
+    public void testStreamMaxRows() {
+        PagedResultSet paged = new PagedResultSet(3, 4);
+        Stream<Row> rows = (Stream<Row>) ResultSetFormatStrategies.fromName("stream", 5).getResult(paged.resultSet);
+        try {
+            rows.collect(Collectors.toList());
+            fail("The result has more rows than maxRows");
+        } catch (IllegalStateException e) {
+            assertEquals(2, paged.fetched);
+        }
+        paged = new PagedResultSet(3, 4);
+        List<Row> list = (List<Row>) ResultSetFormatStrategies.fromName("rowsList", 12).getResult(paged.resultSet);
+        assertEquals(12, list.size());
+    }
+
+    @Test
+    public void testIterableIteratedOnce() {
+        Iterable<Row> rows = (Iterable<Row>) ResultSetFormatStrategies.iterable(0).getResult(new PagedResultSet(1, 2).resultSet);
+        assertTrue(rows.iterator().hasNext());
+        try {
+            rows.iterator();
+            fail("The rows can only be iterated once");
+        } catch (IllegalStateException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+
+    /**
+     * A result set of pages of rows, counting the pages fetched like the driver does when the
+     * current page is exhausted.
+     */
+    private static final class PagedResultSet implements InvocationHandler {
+
+        private final int pages;
+        private final int pageSize;
+        private final ResultSet resultSet;
+        private int fetched = 1;
+        private int available;
+
+        PagedResultSet(int pages, int pageSize) {
+            this.pages = pages;
+            this.pageSize = pageSize;
+            this.available = pageSize;
+            this.resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getAvailableWithoutFetching")) {
+                return available;
+            }
+            if (method.getName().equals("isExhausted")) {
+                return isExhausted();
+            }
+            if (method.getName().equals("one")) {
+                if (isExhausted()) {
+                    return null;
+                }
+                available--;
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Row.class}, this);
+            }
+            return null;
+        }
+
+        private boolean isExhausted() {
+            if (available == 0 && fetched < pages) {
+                fetched++;
+                available = pageSize;
+            }
+            return available == 0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class CassandraMetricsTest {
+
+    @Test
+    public void testRequests() {
+        CassandraMetrics metrics = new CassandraMetrics("cassandra://test");
+        MetricRegistry registry = metrics.getRegistry();
+        CassandraMetrics.Request first = metrics.start("selectAll");
+        CassandraMetrics.Request second = metrics.start("selectAll");
+        assertEquals(2, registry.counter("selectAll.inFlight").getCount());
+        first.done(6, null);
+        second.done(0, new CassandraException(new IllegalStateException("failed")));
+        assertEquals(0, registry.counter("selectAll.inFlight").getCount());
+        assertEquals(2, registry.timer("selectAll.latency").getCount());
+        assertEquals(1, registry.histogram("selectAll.rows").getCount());
+        assertEquals(6, registry.histogram("selectAll.rows").getSnapshot().getMax());
+        assertEquals(1, registry.meter("selectAll.errors.IllegalStateException").getCount());
+    }
+
+    @Test
+    public void testRows() {
+        assertEquals(3, CassandraMetrics.rows(Arrays.asList(1, 2, 3)));
+        assertEquals(0, CassandraMetrics.rows("body"));
+        assertEquals(0, CassandraMetrics.rows(null));
+        // a lazy format counts the rows fetched, a list the rows it has read over every page
+        assertEquals(4, CassandraMetrics.rows(4, Arrays.asList(1, 2).iterator()));
+        assertEquals(5, CassandraMetrics.rows(2, Arrays.asList(1, 2, 3, 4, 5)));
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        CassandraMetrics metrics = new CassandraMetrics("cassandra://jmx?keyspace=simplex");
+        metrics.start(null, new CassandraStatementCache(10));
+        metrics.start("insert").done(0, null);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName latency = new ObjectName(CassandraMetrics.DOMAIN + ":endpoint=" + ObjectName.quote("cassandra://jmx?keyspace=simplex")
+                + ",name=" + ObjectName.quote("insert.latency") + ",type=timers");
+        assertTrue(server.isRegistered(latency));
+        assertEquals(1L, server.getAttribute(latency, "Count"));
+        metrics.stop();
+        assertFalse(server.isRegistered(latency));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class CassandraOffsetStoreTest {
+
+    @Test
+    public void testMemoryOffsetStore() throws Exception {
+        IOffsetStore store = OffsetStores.memory();
+        assertNull(store.getOffset("songs"));
+        store.setOffset("songs", "1000");
+        assertEquals("1000", store.getOffset("songs"));
+        store.removeOffset("songs");
+        assertNull(store.getOffset("songs"));
+    }
+
+    @Test
+    public void testMemoryOffsetStoreKeptByEndpoint() throws Exception {
+        CassandraEndpoint endpoint = new CassandraEndpoint();
+        IOffsetStore store = OffsetStores.fromName("memory", endpoint, null);
+        store.setOffset("songs", "1000");
+        IOffsetStore restarted = OffsetStores.fromName("memory", endpoint, null);
+        assertSame(store, restarted);
+        assertEquals("1000", restarted.getOffset("songs"));
+    }
+
+    @Test
+    public void testFileOffsetStoreSurvivesReload() throws Exception {
+        File file = new File("target" + File.separator + "offsets" + File.separator + System.nanoTime() + ".properties");
+        IOffsetStore store = OffsetStores.file(file);
+        store.setOffset("simplex:select * from songs", "1000");
+        store.setOffset("simplex:select * from albums", "2000");
+        store.removeOffset("simplex:select * from albums");
+
+        IOffsetStore reloaded = OffsetStores.file(file);
+        assertEquals("1000", reloaded.getOffset("simplex:select * from songs"));
+        assertNull(reloaded.getOffset("simplex:select * from albums"));
+    }
+
+    @Test
+    public void testAppendWatermarkClause() {
+        assertEquals("select * from events WHERE ts > ?",
+                CassandraConsumer.appendWatermarkClause("select * from events;", "ts"));
+        assertEquals("select * from events where source = 'a' AND ts > ?",
+                CassandraConsumer.appendWatermarkClause("select * from events where source = 'a'", "ts"));
+        assertEquals("select * from events WHERE ts > ? ALLOW FILTERING",
+                CassandraConsumer.appendWatermarkClause("select * from events ALLOW FILTERING", "ts"));
+        assertEquals("select * from events WHERE ts > ? LIMIT 10",
+                CassandraConsumer.appendWatermarkClause("select * from events LIMIT 10", "ts"));
+        assertEquals("select * from events where source = 'a' AND ts > ? PER PARTITION LIMIT 2 LIMIT 10",
+                CassandraConsumer.appendWatermarkClause("select * from events where source = 'a' PER PARTITION LIMIT 2 LIMIT 10", "ts"));
+        assertEquals("select * from events where source = 'a' AND ts > ? order by ts desc limit 5 allow filtering",
+                CassandraConsumer.appendWatermarkClause("select * from events where source = 'a' order by ts desc limit 5 allow filtering;", "ts"));
+        assertEquals("select * from events where source = 'no limit' AND ts > ? LIMIT 10",
+                CassandraConsumer.appendWatermarkClause("select * from events where source = 'no limit' LIMIT 10", "ts"));
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CassandraRateLimiterTest {
+
+    @Test
+    public void testBurstThenReject() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(10, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(null, 0);
+        }
+        try {
+            limiter.acquire(null, 0);
+            fail("The request over the burst should be rejected");
+        } catch (CassandraException e) {
+            assertEquals(1, limiter.getRejections());
+        }
+        assertEquals(0, limiter.getThrottled());
+    }
+
+    @Test
+    public void testWaitForTokens() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(20, 0, 1000);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(null, 0);
+        }
+        long start = System.nanoTime();
+        limiter.acquire(null, 0);
+        limiter.acquire(null, 0);
+        // a token every 50 milliseconds
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(2, limiter.getThrottled());
+        assertEquals(0, limiter.getRejections());
+    }
+
+    @Test
+    public void testKeysHaveTheirOwnBuckets() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(5, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("bulk", 0);
+        }
+        try {
+            limiter.acquire("bulk", 0);
+            fail("The bulk tenant should be over its rate");
+        } catch (CassandraException e) {
+            // expected
+        }
+        limiter.acquire("interactive", 0);
+        limiter.acquire(null, 0);
+        assertEquals(3, limiter.getKeys());
+    }
+
+    @Test
+    public void testSweepEvictsIdleKeys() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(1000, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("tenant-" + i, 0);
+        }
+        CassandraRateLimiter slow = new CassandraRateLimiter(1, 0, 0);
+        slow.acquire("busy", 0);
+        slow.acquire("idle", 0);
+        // a token of the fast limiter is refilled after a millisecond, of the slow one after a second
+        Thread.sleep(10);
+        limiter.sweep();
+        slow.sweep();
+        assertEquals(0, limiter.getKeys());
+        assertEquals(2, slow.getKeys());
+        // an evicted key starts again with a full bucket
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire("tenant-0", 0);
+        }
+    }
+
+    @Test
+    public void testKeysStayBounded() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(1000000, 0, 0);
+        for (int i = 0; i < 100000; i++) {
+            limiter.acquire("tenant-" + i, 0);
+        }
+        assertTrue(limiter.getKeys() < 100000);
+    }
+
+    @Test
+    public void testRequestLargerThanBurst() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(10, 100, 0);
+        // a request of more bytes than the burst takes the whole burst
+        limiter.acquire(null, 1000);
+        try {
+            limiter.acquire(null, 1);
+            fail("The burst should be empty");
+        } catch (CassandraException e) {
+            assertEquals(1, limiter.getRejections());
+        }
+    }
+
+    @Test
+    public void testEvictedBucket() throws Exception {
+        CassandraRateLimiter.Bucket bucket = new CassandraRateLimiter.Bucket(1);
+        long now = System.nanoTime();
+        assertTrue(bucket.reserve(1, now, 0) >= 0);
+        // a bucket with tokens taken is not evicted
+        assertFalse(bucket.evict(now));
+        bucket.cancel(1);
+        assertTrue(bucket.evict(now));
+        assertEquals(CassandraRateLimiter.Bucket.EVICTED, bucket.reserve(1, now, 0));
+        bucket.cancel(1);
+        assertEquals(CassandraRateLimiter.Bucket.EVICTED, bucket.reserve(1, now, 0));
+        bucket.restore(now);
+        assertEquals(0, bucket.reserve(1, now, 0));
+    }
+
+    @Test
+    public void testBytesRejectionGivesBackRequestToken() throws Exception {
+        CassandraRateLimiter limiter = new CassandraRateLimiter(2, 1000, 0);
+        limiter.acquire(null, 1000);
+        try {
+            limiter.acquire(null, 1000);
+            fail("The request over the bytes rate should be rejected");
+        } catch (CassandraException e) {
+            // expected
+        }
+        // the request token of the rejected request is available again
+        limiter.acquire(null, 0);
+        assertEquals(1, limiter.getRejections());
+    }
+}
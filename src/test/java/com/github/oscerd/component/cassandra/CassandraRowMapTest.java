@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+
+public class CassandraRowMapTest {
+
+    @Test
+    public void testRowMapSharesTheColumnIndex() {
+        CassandraRowMap.Columns columns = new CassandraRowMap.Columns(new String[] {"id", "title", "album"});
+        Map<String, Object> first = CassandraRowMap.of(row(1, "Song 1", null), columns);
+        Map<String, Object> second = CassandraRowMap.of(row(2, "Song 2", "Album 2"), columns);
+
+        assertEquals(3, first.size());
+        assertEquals(1, first.get("id"));
+        assertEquals("Song 1", first.get("title"));
+        assertNull(first.get("album"));
+        assertTrue(first.containsKey("album"));
+        assertFalse(first.containsKey("artist"));
+        assertNull(first.get("artist"));
+        assertEquals(Arrays.asList("id", "title", "album"), Arrays.asList(second.keySet().toArray()));
+        assertEquals(Arrays.asList(2, "Song 2", "Album 2"), Arrays.asList(second.values().toArray()));
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("id", 1);
+        expected.put("title", "Song 1");
+        expected.put("album", null);
+        assertEquals(expected, first);
+        assertEquals(expected.hashCode(), first.hashCode());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRowMapIsImmutable() {
+        CassandraRowMap.Columns columns = new CassandraRowMap.Columns(new String[] {"id"});
+        CassandraRowMap.of(row(1), columns).put("id", 2);
+    }
+
+    @Test
+    public void testDuplicateColumnMapsToTheFirst() {
+        CassandraRowMap.Columns columns = new CassandraRowMap.Columns(new String[] {"id", "id"});
+        Map<String, Object> map = CassandraRowMap.of(row(1, 2), columns);
+        assertEquals(1, map.get("id"));
+        assertEquals(1, map.size());
+        assertEquals(1, map.entrySet().size());
+        assertEquals(Arrays.asList("id"), Arrays.asList(map.keySet().toArray()));
+        assertEquals(Collections.singletonMap("id", 1), map);
+    }
+
+    @Test
+    public void testConverterIsLoaded() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        context.start();
+        try {
+            assertNotNull(context.getTypeConverterRegistry().lookup(Map.class, Row.class));
+        } finally {
+            context.stop();
+        }
+    }
+
+    private static Row row(final Object... values) {
+        return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class<?>[] {Row.class}, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getObject")) {
+                    return values[(Integer) args[0]];
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
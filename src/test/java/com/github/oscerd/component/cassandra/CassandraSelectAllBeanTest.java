@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.junit.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+import com.github.oscerd.component.cassandra.embedded.dto.Song;
+
+public class CassandraSelectAllBeanTest extends CassandraBaseTest {
+
+    @Test
+    public void testSelectAllBean() throws Exception {
+        List<Song> result = (List<Song>) template.requestBodyAndHeaders("direct:songs", "", contactPoints());
+        assertEquals(6, result.size());
+        for (Song song : result) {
+            assertNotNull(song.getTitle());
+            assertTrue(song.getTags().contains("metal"));
+        }
+    }
+
+    @Test
+    public void testSelectAllBeanUserDefinedTypes() throws Exception {
+        Cluster cluster = Cluster.builder().addContactPoint("127.0.0.1").build();
+        try {
+            Session session = cluster.connect("simplex");
+            session.execute("CREATE TYPE IF NOT EXISTS address (street text, zip_code int)");
+            session.execute("CREATE TABLE IF NOT EXISTS customers (id int PRIMARY KEY, full_name text, home frozen<address>, "
+                    + "previous list<frozen<address>>, offices map<text, frozen<address>>)");
+            session.execute("INSERT INTO customers (id, full_name, home, previous, offices) VALUES (1, 'Mark', "
+                    + "{street: 'Via Roma', zip_code: 10100}, [{street: 'Via Po', zip_code: 10124}], {'hq': {street: 'Corso Francia', zip_code: 10138}})");
+        } finally {
+            cluster.close();
+        }
+        List<Customer> result = (List<Customer>) template.requestBodyAndHeaders("direct:customers", "", contactPoints());
+        assertEquals(1, result.size());
+        Customer customer = result.get(0);
+        assertEquals("Mark", customer.fullName);
+        assertEquals("Via Roma", customer.getHome().getStreet());
+        assertEquals(10100, customer.getHome().getZipCode());
+        assertEquals("Via Po", customer.getPrevious().get(0).getStreet());
+        assertEquals(10138, customer.getOffices().get("hq").getZipCode());
+    }
+
+    private Map<String, Object> contactPoints() {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        List<String> collAddr = new ArrayList<String>();
+        collAddr.add("127.0.0.1");
+        headers.put(CassandraConstants.CASSANDRA_CONTACT_POINTS, collAddr);
+        return headers;
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:songs")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=bean:" + Song.class.getName());
+                from("direct:customers")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=customers&operation=selectAll&format=bean:" + Customer.class.getName());
+            }
+        };
+    }
+
+    public static class Customer {
+
+        public String fullName;
+        private Address home;
+        private List<Address> previous;
+        private Map<String, Address> offices;
+
+        public Address getHome() {
+            return home;
+        }
+
+        public void setHome(Address home) {
+            this.home = home;
+        }
+
+        public List<Address> getPrevious() {
+            return previous;
+        }
+
+        public void setPrevious(List<Address> previous) {
+            this.previous = previous;
+        }
+
+        public Map<String, Address> getOffices() {
+            return offices;
+        }
+
+        public void setOffices(Map<String, Address> offices) {
+            this.offices = offices;
+        }
+    }
+
+    public static class Address {
+
+        private String street;
+        private int zipCode;
+
+        public String getStreet() {
+            return street;
+        }
+
+        public void setStreet(String street) {
+            this.street = street;
+        }
+
+        public int getZipCode() {
+            return zipCode;
+        }
+
+        public void setZipCode(int zipCode) {
+            this.zipCode = zipCode;
+        }
+    }
+}
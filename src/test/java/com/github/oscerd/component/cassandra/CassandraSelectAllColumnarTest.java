@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.junit.Test;
+
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+
+public class CassandraSelectAllColumnarTest extends CassandraBaseTest {
+
+    @Test
+    public void testSelectAllColumnar() throws Exception {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        List<String> collAddr = new ArrayList<String>();
+        collAddr.add("127.0.0.1");
+        headers.put(CassandraConstants.CASSANDRA_CONTACT_POINTS, collAddr);
+        CassandraColumns result = (CassandraColumns) template.requestBodyAndHeaders("direct:in", "", headers);
+        assertEquals(6, result.getRowCount());
+
+        int[] ids = ((CassandraColumns.IntColumn) result.getColumn("id")).getValues();
+        int sum = 0;
+        for (int id : ids) {
+            sum += id;
+        }
+        assertEquals(21, sum);
+
+        CassandraColumns.TextColumn albums = (CassandraColumns.TextColumn) result.getColumn("album");
+        assertEquals(6, albums.getCodes().length);
+        assertEquals(new HashSet<String>(Arrays.asList("The gathering", "One for sorrow")), new HashSet<String>(Arrays.asList(albums.getDictionary())));
+
+        CassandraColumns.Column data = result.getColumn("data");
+        assertEquals(6, data.getNulls().cardinality());
+        assertNull(data.getObject(0));
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=columnar");
+            }
+        };
+    }
+}
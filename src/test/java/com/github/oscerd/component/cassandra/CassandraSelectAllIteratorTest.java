@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+
+public class CassandraSelectAllIteratorTest extends CassandraBaseTest {
+
+    @Test
+    public void testSelectAllIteratorSplitStreaming() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:row");
+        mock.expectedMessageCount(6);
+        mock.allMessages().body().isInstanceOf(Row.class);
+        template.requestBodyAndHeaders("direct:in", "", contactPoints());
+        assertMockEndpointsSatisfied();
+    }
+
+    @Test
+    public void testSelectAllMaxRows() throws Exception {
+        try {
+            template.requestBodyAndHeaders("direct:max", "", contactPoints());
+            fail("The result has more rows than maxRows");
+        } catch (CamelExecutionException e) {
+            assertIsInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    private Map<String, Object> contactPoints() {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        List<String> collAddr = new ArrayList<String>();
+        collAddr.add("127.0.0.1");
+        headers.put(CassandraConstants.CASSANDRA_CONTACT_POINTS, collAddr);
+        return headers;
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=iterator&fetchSize=2")
+                    .split(body()).streaming()
+                        .to("mock:row");
+                from("direct:max")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=stream&fetchSize=2&maxRows=3")
+                    .split(body()).streaming()
+                        .to("mock:max");
+            }
+        };
+    }
+}
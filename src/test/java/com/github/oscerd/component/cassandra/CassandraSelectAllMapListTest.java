@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.Test;
+
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+
+public class CassandraSelectAllMapListTest extends CassandraBaseTest {
+
+    @Test
+    public void testSelectAllMapList() throws Exception {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        List<String> collAddr = new ArrayList<String>();
+        collAddr.add("127.0.0.1");
+        headers.put(CassandraConstants.CASSANDRA_CONTACT_POINTS, collAddr);
+        List<Map<String, Object>> result = (List<Map<String, Object>>) template.requestBodyAndHeaders("direct:in", "", headers);
+        assertEquals(6, result.size());
+        for (Map<String, Object> row : result) {
+            assertTrue(row instanceof CassandraRowMap);
+            assertTrue(row.containsKey("title"));
+            assertNotNull(row.get("id"));
+        }
+        assertEquals(result.get(0).keySet(), result.get(5).keySet());
+    }
+
+    @Test
+    public void testConvertRowToMap() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:rows");
+        mock.expectedMessageCount(6);
+        template.sendBody("direct:split", "");
+        assertMockEndpointsSatisfied();
+        Map<?, ?> row = mock.getExchanges().get(0).getIn().getBody(Map.class);
+        assertTrue(row instanceof CassandraRowMap);
+        assertTrue(row.containsKey("album"));
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=mapList");
+                from("direct:split")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=songs&operation=selectAll&format=iterator")
+                    .split(body()).streaming()
+                        .convertBodyTo(Map.class)
+                        .to("mock:rows");
+            }
+        };
+    }
+}
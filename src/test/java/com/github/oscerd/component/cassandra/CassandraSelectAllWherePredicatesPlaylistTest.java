@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.junit.Test;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.github.oscerd.component.cassandra.embedded.CassandraPlaylistBaseTest;
+
+public class CassandraSelectAllWherePredicatesPlaylistTest extends CassandraPlaylistBaseTest {
+
+    private static final UUID PLAYLIST = UUID.fromString("62c36092-82a1-3a00-93d1-46196ee77204");
+
+    @Test
+    public void testSelectPartitionSlice() throws Exception {
+        Map<String, Object> headers = contactPoints();
+        headers.put(CassandraConstants.CASSANDRA_WHERE_PREDICATES, Arrays.asList(
+                CassandraPredicate.eq("id", PLAYLIST),
+                CassandraPredicate.gte("song_order", 2),
+                CassandraPredicate.lt("song_order", 4)));
+        headers.put(CassandraConstants.CASSANDRA_ORDERBY_COLUMN, "song_order");
+        headers.put(CassandraConstants.CASSANDRA_ORDER_DIRECTION, "desc");
+        ResultSet result = (ResultSet) template.requestBodyAndHeaders("direct:in", "", headers);
+        List<Row> rows = result.all();
+        assertEquals(2, rows.size());
+        assertEquals(3, rows.get(0).getInt("song_order"));
+        assertEquals(2, rows.get(1).getInt("song_order"));
+    }
+
+    @Test
+    public void testSelectPredicateArrays() throws Exception {
+        Map<String, Object> headers = contactPoints();
+        headers.put(CassandraConstants.CASSANDRA_WHERE_PREDICATES, Arrays.asList(
+                new Object[] {"id", "eq", PLAYLIST},
+                new Object[] {"song_order", "in", Arrays.asList(1, 3)}));
+        ResultSet result = (ResultSet) template.requestBodyAndHeaders("direct:in", "", headers);
+        assertEquals(2, result.all().size());
+    }
+
+    private Map<String, Object> contactPoints() {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        List<String> collAddr = new ArrayList<String>();
+        collAddr.add("127.0.0.1");
+        headers.put(CassandraConstants.CASSANDRA_CONTACT_POINTS, collAddr);
+        return headers;
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to("cassandra:cassandraConnection?keyspace=simplex&table=playlists&operation=selectAllWhere");
+            }
+        };
+    }
+}
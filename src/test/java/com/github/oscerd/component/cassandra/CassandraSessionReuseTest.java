@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+
+import org.apache.camel.builder.RouteBuilder;
+import com.github.oscerd.component.cassandra.embedded.CassandraBaseTest;
+import org.junit.Test;
+
+/**
+ * Checks that the exchanges of an endpoint URI share one endpoint and the session it
+ * opened, instead of connecting a cluster for every request or every lookup.
+ */
+public class CassandraSessionReuseTest extends CassandraBaseTest {
+
+    private static final String URI = "cassandra:cassandraConnection?host=127.0.0.1&port=9042&keyspace=simplex&table=songs&operation=selectAll";
+
+    @Test
+    public void testSameUriResolvesSameEndpoint() throws Exception {
+        CassandraEndpoint endpoint = context.getEndpoint(URI, CassandraEndpoint.class);
+        CassandraEndpoint resolvedAgain = context.getEndpoint(URI, CassandraEndpoint.class);
+        assertSame(endpoint, resolvedAgain);
+        assertNotNull(endpoint.getCassandraSession());
+        assertSame(endpoint.getCassandraSession(), resolvedAgain.getCassandraSession());
+    }
+
+    @Test
+    public void testSessionReusedAcrossExchanges() throws Exception {
+        CassandraEndpoint endpoint = context.getEndpoint(URI, CassandraEndpoint.class);
+        Session session = endpoint.getCassandraSession();
+        assertNotNull(session);
+        for (int i = 0; i < 10; i++) {
+            ResultSet result = (ResultSet) template.requestBody("direct:in", "");
+            assertEquals(6, result.getAvailableWithoutFetching());
+            assertSame(session, endpoint.getCassandraSession());
+        }
+        assertFalse(session.isClosed());
+    }
+
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            public void configure() {
+                from("direct:in")
+                    .to(URI);
+            }
+        };
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.oscerd.component.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+
+public class CassandraStatementCacheTest {
+
+    private Session session;
+    private int prepared;
+    private Boolean idempotent;
+
+    @Before
+    public void setUp() {
+        prepared = 0;
+        idempotent = null;
+        session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("prepare")) {
+                    prepared++;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("setIdempotent")) {
+                                idempotent = (Boolean) args[0];
+                            }
+                            return null;
+                        }
+                    });
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        CassandraStatementCache cache = new CassandraStatementCache(10);
+        PreparedStatement first = cache.prepare(session, "songs", "selectAll|false|", selectAll());
+        PreparedStatement second = cache.prepare(session, "songs", "selectAll|false|", selectAll());
+        PreparedStatement limited = cache.prepare(session, "songs", "selectAll|true|", selectAll());
+        assertSame(first, second);
+        assertNotSame(first, limited);
+        assertEquals(2, prepared);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        CassandraStatementCache cache = new CassandraStatementCache(2);
+        PreparedStatement first = cache.prepare(session, "songs", "a", selectAll());
+        cache.prepare(session, "songs", "b", selectAll());
+        // touch the first shape so that the second one becomes the eldest
+        cache.prepare(session, "songs", "a", selectAll());
+        cache.prepare(session, "songs", "c", selectAll());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getSize());
+        assertSame(first, cache.prepare(session, "songs", "a", selectAll()));
+        cache.prepare(session, "songs", "b", selectAll());
+        assertEquals(4, prepared);
+    }
+
+    @Test
+    public void testInvalidateTable() throws Exception {
+        CassandraStatementCache cache = new CassandraStatementCache(10);
+        cache.prepare(session, "songs", "a", selectAll());
+        cache.prepare(session, "playlists", "a", selectAll());
+        cache.invalidate("SONGS");
+        assertEquals(1, cache.getSize());
+        cache.prepare(session, "playlists", "a", selectAll());
+        assertEquals(1, cache.getHits());
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidatePlainCql() throws Exception {
+        CassandraStatementCache cache = new CassandraStatementCache(10);
+        cache.prepare(session, "songs", "a", selectAll());
+        cache.prepare(session, null, "cql|SELECT * FROM playlists", selectAll());
+        // the tables of plain CQL are not known, any table change removes its statement
+        cache.invalidate("playlists");
+        assertEquals(1, cache.getSize());
+        cache.prepare(session, null, "cql|SELECT * FROM playlists", selectAll());
+        cache.invalidate(null);
+        assertEquals(1, cache.getSize());
+        cache.prepare(session, "songs", "a", selectAll());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testIdempotence() throws Exception {
+        CassandraStatementCache cache = new CassandraStatementCache(10);
+        cache.prepare(session, "songs", "update", new CassandraStatementCache.StatementBuilder() {
+            @Override
+            public RegularStatement build() {
+                return QueryBuilder.update("songs").with(QueryBuilder.set("title", QueryBuilder.bindMarker()))
+                        .where(QueryBuilder.eq("id", QueryBuilder.bindMarker()));
+            }
+        });
+        assertEquals(Boolean.TRUE, idempotent);
+        cache.prepare(session, "counters", "incrCounter", new CassandraStatementCache.StatementBuilder() {
+            @Override
+            public RegularStatement build() {
+                return QueryBuilder.update("counters").with(QueryBuilder.incr("plays", QueryBuilder.bindMarker()))
+                        .where(QueryBuilder.eq("id", QueryBuilder.bindMarker()));
+            }
+        });
+        assertEquals(Boolean.FALSE, idempotent);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new CassandraStatementCache(0);
+    }
+
+    private CassandraStatementCache.StatementBuilder selectAll() {
+        return new CassandraStatementCache.StatementBuilder() {
+            @Override
+            public RegularStatement build() {
+                return QueryBuilder.select().all().from("songs");
+            }
+        };
+    }
+}
@@ -16,12 +16,38 @@
  */
 package com.github.oscerd.component.cassandra;
 
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
+import org.apache.camel.ResolveEndpointFailedException;
+import org.apache.camel.impl.DefaultCamelContext;
 import org.junit.Test;
 
 public class CassandraValidationTest{
 
+    @Test
+    public void testSameUriResolvesSameEndpoint() throws Exception {
+    	DefaultCamelContext context = new DefaultCamelContext();
+    	String uri = "cassandra:cassandraConnection?host=127.0.0.1&keyspace=simplex&table=songs&operation=selectAll";
+    	assertSame(context.getEndpoint(uri), context.getEndpoint(uri));
+    }
+    
+    @Test
+    public void testBeanFormatResolvedWithTheContext() throws Exception {
+    	DefaultCamelContext context = new DefaultCamelContext();
+    	CassandraEndpoint endpoint = context.getEndpoint("cassandra:cassandraConnection?host=127.0.0.1&keyspace=simplex&table=songs&operation=selectAll"
+    			+ "&format=bean:" + CassandraValidationTest.class.getName(), CassandraEndpoint.class);
+    	assertNotNull(endpoint.getResultSetFormatStrategy());
+    }
+    
+    @Test(expected=ResolveEndpointFailedException.class)
+    public void testBeanFormatNotFoundFailsTheEndpoint() throws Exception {
+    	DefaultCamelContext context = new DefaultCamelContext();
+    	context.getEndpoint("cassandra:cassandraConnection?host=127.0.0.1&keyspace=simplex&table=songs&operation=selectAll&format=bean:com.example.Missing");
+    }
+    
     @Test(expected=IllegalArgumentException.class)
     public void testConsumerValidationKo() throws Exception {
     	CassandraEndpoint endpoint = new CassandraEndpoint();
@@ -72,4 +98,123 @@ public class CassandraValidationTest{
     	endpoint.setTable("songs");
     	endpoint.createProducer();
     }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoSpeculativeExecution() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setSpeculativeExecution("always");
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoSpeculativePercentile() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setSpeculativeExecution("percentile");
+    	endpoint.setSpeculativePercentile(100);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoLatencyExclusionThreshold() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setLatencyAware(true);
+    	endpoint.setLatencyExclusionThreshold(0.5);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoConnectionsPerHost() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setCoreConnectionsPerHost(4);
+    	endpoint.setMaxConnectionsPerHost(2);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoPoolTimeout() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setPoolTimeout(-1);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoMaxInFlightWait() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setMaxInFlight(64);
+    	endpoint.setInFlightPolicy(CassandraInFlightPolicy.wait);
+    	endpoint.setMaxInFlightWait(0);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testProducerValidationKoAdaptiveInFlight() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setAdaptiveInFlight(true);
+    	endpoint.setMaxInFlight(64);
+    	endpoint.setMinInFlight(128);
+    	endpoint.createProducer();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testConsumerValidationKoRateLimit() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setHost("127.0.0.1");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setPollingQuery("select * from songs");
+    	endpoint.setRateLimit(-1);
+    	Processor p = new Processor() {
+			@Override
+			public void process(Exchange arg0) throws Exception {
+			}
+		};
+    	endpoint.createConsumer(p);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testStartValidatesBeforeConnecting() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setCamelContext(new DefaultCamelContext());
+    	// nothing listens on the port: connecting would fail with another exception
+    	endpoint.setHost("127.0.0.1");
+    	endpoint.setPort("1");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setReadTimeout(0);
+    	endpoint.start();
+    }
+    
+    @Test
+    public void testProducerValidationOkPolicies() throws Exception {
+    	CassandraEndpoint endpoint = new CassandraEndpoint();
+    	endpoint.setOperation("selectAll");
+    	endpoint.setKeyspace("simplex");
+    	endpoint.setTable("songs");
+    	endpoint.setSpeculativeExecution("percentile");
+    	endpoint.setRetryPolicy("downgradingConsistency");
+    	endpoint.setLogRetries(true);
+    	endpoint.setLocalDc("dc1");
+    	endpoint.setUsedHostsPerRemoteDc(1);
+    	endpoint.setLatencyAware(true);
+    	endpoint.createProducer();
+    }
 }
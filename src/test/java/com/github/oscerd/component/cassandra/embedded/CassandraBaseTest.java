@@ -84,13 +84,7 @@ public class CassandraBaseTest extends CamelTestSupport {
         }
         Cluster cluster = Cluster.builder().addContactPoint("127.0.0.1").build();
         Session session = cluster.connect();
-        session.execute("CREATE KEYSPACE IF NOT EXISTS simplex WITH replication "
-                        + "= {'class':'SimpleStrategy', 'replication_factor':3};");
-        session.execute("CREATE TABLE IF NOT EXISTS simplex.songs ("
-                        + "id int PRIMARY KEY," + "title text," + "album text,"
-                        + "artist text," + "tags set<text>," + "data blob," + ");");
-        session.execute("CREATE INDEX IF NOT EXISTS album_idx ON simplex.songs(album);");
-        session.execute("CREATE INDEX IF NOT EXISTS title_idx ON simplex.songs(title);");
+        createSchema(session);
         PreparedStatement statement = session.prepare("INSERT INTO simplex.songs "
                                       + "(id, title, album, artist, tags) "
                                       + "VALUES (?, ?, ?, ?, ?);");
@@ -112,6 +106,19 @@ public class CassandraBaseTest extends CamelTestSupport {
         }
     }
     
+    /**
+     * Creates the simplex keyspace and its songs table, as used by the tests and the load harness.
+     */
+    public static void createSchema(Session session) {
+        session.execute("CREATE KEYSPACE IF NOT EXISTS simplex WITH replication "
+                        + "= {'class':'SimpleStrategy', 'replication_factor':3};");
+        session.execute("CREATE TABLE IF NOT EXISTS simplex.songs ("
+                        + "id int PRIMARY KEY," + "title text," + "album text,"
+                        + "artist text," + "tags set<text>," + "data blob," + ");");
+        session.execute("CREATE INDEX IF NOT EXISTS album_idx ON simplex.songs(album);");
+        session.execute("CREATE INDEX IF NOT EXISTS title_idx ON simplex.songs(title);");
+    }
+
     private void prepareStartingData(List<Song> songList) {
         Song song = new Song();
         song.setId(1);